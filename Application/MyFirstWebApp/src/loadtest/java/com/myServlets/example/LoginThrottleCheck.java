@@ -0,0 +1,53 @@
+package com.myServlets.example;
+
+// Self-check for LoginThrottle: a key that shares one row with a locked-out key stays allowed,
+// only a key colliding in every row is caught by someone else's failures.
+// Run with: mvn -Ploadtest test-compile && java -cp target/classes:target/test-classes com.myServlets.example.LoginThrottleCheck
+public class LoginThrottleCheck {
+
+    public static void main(String[] args) {
+        // Narrowest table (16 slots per row) and no refill during the check, so collisions are easy to find
+        LoginThrottle throttle = new LoginThrottle(2, 3600, 16);
+        String attacker = "attacker";
+        long attackerHash = LoginThrottle.baseHash(attacker);
+
+        String partial = null;
+        String full = null;
+        for (int i = 0; (partial == null || full == null) && i < 1_000_000; i++) {
+            String key = "user" + i;
+            long hash = LoginThrottle.baseHash(key);
+            boolean row0 = throttle.slot(hash, 0) == throttle.slot(attackerHash, 0);
+            boolean row1 = throttle.slot(hash, 1) == throttle.slot(attackerHash, 1);
+            if (row0 && !row1 && partial == null) {
+                partial = key;
+            } else if (row0 && row1 && full == null) {
+                full = key;
+            }
+        }
+        check(partial != null && full != null, "no colliding keys found");
+
+        check(throttle.isAllowed(attacker), "fresh key should be allowed");
+        throttle.recordFailure(attacker);
+        check(throttle.isAllowed(attacker), "one failure left of two");
+        throttle.recordFailure(attacker);
+        check(!throttle.isAllowed(attacker), "key should be locked after using its capacity");
+
+        check(throttle.isAllowed(partial), partial + " shares only row 0 with the attacker and must stay allowed");
+        check(!throttle.isAllowed(full), full + " collides in every row, so it shares the attacker's buckets");
+        check(throttle.isAllowed("someone-else"), "unrelated key should be allowed");
+
+        // The innocent key's own failures still count: its row-1 bucket runs out like any other
+        throttle.recordFailure(partial);
+        throttle.recordFailure(partial);
+        check(!throttle.isAllowed(partial), partial + " should be locked after its own failures");
+
+        check(throttle.getRejectedCount() == 3, "every refusal counted, got " + throttle.getRejectedCount());
+        System.out.println("LoginThrottleCheck: OK (" + partial + " shares one row, " + full + " both rows)");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("LoginThrottleCheck failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.myServlets.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Measures what one login costs at different PBKDF2 work factors.
+// Lives with the load-test sources (same package as PasswordHasher) so it never ships in the WAR. Run with:
+//   mvn -Ploadtest test-compile && java -cp target/classes:target/test-classes com.myServlets.example.PasswordHashBenchmark [iterations...]
+//
+// Reports:
+//   single  - latency of one verify on an idle machine (what a user waits for)
+//   pool    - logins/second the CPU pool sustains with every core busy (what the server can take)
+public class PasswordHashBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 20;
+
+    public static void main(String[] args) {
+        int[] workFactors = {10_000, 50_000, 100_000, 310_000, 600_000};
+        if (args.length > 0) {
+            workFactors = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                workFactors[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("PBKDF2-HMAC-SHA256, " + cores + " cores");
+        System.out.printf("%12s %14s %18s%n", "iterations", "single (ms)", "pool (logins/s)");
+
+        for (int iterations : workFactors) {
+            String stored = PasswordHasher.hashNow("correct horse", iterations);
+
+            // Single-threaded latency
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                PasswordHasher.verifyNow("correct horse", stored);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                if (!PasswordHasher.verifyNow("correct horse", stored)) {
+                    throw new IllegalStateException("verify failed");
+                }
+            }
+            double singleMillis = (System.nanoTime() - start) / 1_000_000.0 / MEASURED_ROUNDS;
+
+            // Throughput through the bounded pool, the way UserDAO uses it
+            PasswordHasher hasher = new PasswordHasher(iterations, cores, 1024);
+            int logins = MEASURED_ROUNDS * cores;
+            List<Thread> callers = new ArrayList<>();
+            start = System.nanoTime();
+            for (int c = 0; c < cores; c++) {
+                Thread t = new Thread(() -> {
+                    for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                        hasher.verify("correct horse", stored);
+                    }
+                });
+                callers.add(t);
+                t.start();
+            }
+            for (Thread t : callers) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            hasher.shutdown();
+
+            System.out.printf("%12d %14.2f %18.0f%n", iterations, singleMillis, logins / seconds);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.myServlets.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Self-check for SessionTokens.verify: round trip, expiry, tampering, foreign keys and garbage.
+// Run with: mvn -Ploadtest test-compile && java -cp target/classes:target/test-classes com.myServlets.example.SessionTokensCheck
+public class SessionTokensCheck {
+
+    private static final byte[] SECRET = "check-secret-check-secret-check!".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) {
+        SessionTokens tokens = new SessionTokens(SECRET, 60);
+
+        String token = tokens.issue("alice");
+        check("alice".equals(tokens.verify(token)), "fresh token should verify");
+        check(tokens.getRejectedCount() == 0, "nothing rejected yet");
+
+        // Expiry is in the signed payload, so a negative TTL gives an already-expired but genuine token
+        String expired = new SessionTokens(SECRET, -1).issue("alice");
+        check(tokens.verify(expired) == null, "expired token should be rejected");
+
+        // Change the user (same length) or push the expiry out: the signature no longer matches
+        int firstDot = token.indexOf('.');
+        int lastDot = token.lastIndexOf('.');
+        String forgedUser = b64("mallo") + token.substring(firstDot);
+        check(tokens.verify(forgedUser) == null, "token with swapped username should be rejected");
+        String forgedExpiry = token.substring(0, firstDot + 1) + "9999999999" + token.substring(lastDot);
+        check(tokens.verify(forgedExpiry) == null, "token with extended expiry should be rejected");
+        char first = token.charAt(lastDot + 1); // first signature char: all six bits are significant
+        String flippedSignature = token.substring(0, lastDot + 1) + (first == 'A' ? 'B' : 'A') + token.substring(lastDot + 2);
+        check(tokens.verify(flippedSignature) == null, "token with altered signature should be rejected");
+
+        // Signed with another node's key
+        String foreign = new SessionTokens("some-other-secret".getBytes(StandardCharsets.UTF_8), 60).issue("alice");
+        check(tokens.verify(foreign) == null, "token from another key should be rejected");
+
+        // Malformed input never throws
+        for (String garbage : new String[] {"", "abc", "a.b", ".x.y", "YWxpY2U.notanumber.c2ln", "YWxpY2U.1.!!!"}) {
+            check(tokens.verify(garbage) == null, "malformed token should be rejected: " + garbage);
+        }
+        check(tokens.verify(null) == null, "null token is simply not logged in");
+
+        check(tokens.getRejectedCount() == 11, "every rejection counted, got " + tokens.getRejectedCount());
+        System.out.println("SessionTokensCheck: OK");
+    }
+
+    private static String b64(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("SessionTokensCheck failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.myServlets.example.loadtest;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.scan.StandardJarScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Runs the real webapp (web.xml, servlets, JSPs) in an embedded Tomcat against an in-memory H2
+// database in MySQL mode. DatabaseConfig picks the H2 URL up from the db.* system properties.
+public class EmbeddedServer {
+
+    static final String JDBC_URL = "jdbc:h2:mem:user_auth;MODE=MySQL;DB_CLOSE_DELAY=-1;IGNORECASE=TRUE";
+    static final String DB_USER = "sa";
+    static final String DB_PASSWORD = "sa";
+    // The harness seeds users through bulkRegister, which web.xml leaves switched off
+    static final String BULK_SECRET = "loadtest-bulk-secret";
+
+    private static final String SCHEMA_NOTEBOOK = "user_auth_database_initilization.mysql-notebook";
+
+    private final Tomcat tomcat = new Tomcat();
+    private Connection keepAlive;
+
+    public int start(Path projectDir) throws Exception {
+        // Point the app at H2 before anything touches DatabaseConfig
+        System.setProperty("db.url", JDBC_URL);
+        System.setProperty("db.username", DB_USER);
+        System.setProperty("db.password", DB_PASSWORD);
+        System.setProperty("db.driverClassName", "org.h2.Driver");
+        System.setProperty("auth.bulk.secret", BULK_SECRET);
+        // -Dloadtest.replicas=N: N extra pools on the same H2 database, to exercise read routing
+        int replicas = Integer.getInteger("loadtest.replicas", 0);
+        if (replicas > 0 && System.getProperty("db.replicaUrls") == null) {
+            System.setProperty("db.replicaUrls", String.join(",", Collections.nCopies(replicas, JDBC_URL)));
+        }
+
+        keepAlive = DriverManager.getConnection(JDBC_URL, DB_USER, DB_PASSWORD);
+        loadSchema(keepAlive, projectDir.resolve(SCHEMA_NOTEBOOK));
+
+        File baseDir = Files.createTempDirectory("loadtest-tomcat").toFile();
+        tomcat.setBaseDir(baseDir.getAbsolutePath());
+        tomcat.setPort(Integer.getInteger("loadtest.port", 0)); // 0 = any free port
+        tomcat.getConnector();
+
+        Context ctx = tomcat.addWebapp("/app", projectDir.resolve("src/main/webapp").toAbsolutePath().toString());
+        // The app's classes (and Tomcat itself) come from our classpath, not WEB-INF; under exec:java that is
+        // not the system class loader, so hand it over explicitly. Also skip scanning every jar on it for TLDs.
+        ctx.setParentClassLoader(EmbeddedServer.class.getClassLoader());
+        ((StandardJarScanner) ctx.getJarScanner()).setScanClassPath(false);
+        // Runs after web.xml has been read (ContextConfig was registered first), so this overrides it
+        ctx.addLifecycleListener(event -> {
+            if (Lifecycle.CONFIGURE_START_EVENT.equals(event.getType())) {
+                ((Wrapper) ctx.findChild("AuthServlet")).addInitParameter("bulkRegisterEnabled", "true");
+            }
+        });
+
+        tomcat.start();
+        return tomcat.getConnector().getLocalPort();
+    }
+
+    public void stop() throws LifecycleException, SQLException {
+        tomcat.stop();
+        tomcat.destroy();
+        keepAlive.close();
+    }
+
+    // Runs the CREATE TABLE / INSERT statements from the MySQL notebook the real database was built from
+    static void loadSchema(Connection conn, Path notebook) throws IOException, SQLException {
+        String json = Files.readString(notebook, StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile("\"content\":\\s*\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(json);
+        if (!matcher.find()) {
+            throw new IOException("No SQL content found in " + notebook);
+        }
+        String sql = matcher.group(1).replace("\\n", "\n").replace("\\\"", "\"").replace("\\\\", "\\");
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String statement : sql.split(";")) {
+                String trimmed = statement.trim();
+                String upper = trimmed.toUpperCase();
+                if (upper.startsWith("CREATE TABLE") || upper.startsWith("INSERT")) {
+                    stmt.execute(trimmed);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.myServlets.example.loadtest;
+
+import com.myServlets.example.LatencyHistogram;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives a register/login/logout/hello mix at a fixed target rate against the embedded webapp
+// and prints throughput plus p50/p99/p999 latency per action.
+//
+// Open loop: request i is due at start + i/rate. Latency is measured from that due time, so if the
+// server (or the client's in-flight limit) falls behind, the queueing delay shows up in the numbers.
+//
+// Settings (-D system properties):
+//   loadtest.rate=200             requests per second
+//   loadtest.durationSeconds=20   measured run
+//   loadtest.warmupSeconds=5      same traffic first, not recorded
+//   loadtest.mix=register:10,login:70,logout:10,hello:10
+//   loadtest.users=1000           users created (via bulkRegister) before the run
+//   loadtest.maxInFlight=256      client-side concurrency cap
+//   auth.pbkdf2.iterations=1000   kept low by default so hashing doesn't hide everything else
+public class LoadTestHarness {
+
+    private static final String[] ACTIONS = {"register", "login", "logout", "hello"};
+    private static final int SEED_BATCH = 10_000;
+
+    private final int rate = Integer.getInteger("loadtest.rate", 200);
+    private final int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 20);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 5);
+    private final int seedUsers = Integer.getInteger("loadtest.users", 1000);
+    private final int maxInFlight = Integer.getInteger("loadtest.maxInFlight", 256);
+    private final int[] cumulativeMix = parseMix(System.getProperty("loadtest.mix", "register:10,login:70,logout:10,hello:10"));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newFixedThreadPool(8))
+            .build();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[ACTIONS.length];
+    private final LongAdder[] errors = new LongAdder[ACTIONS.length];
+    private final AtomicInteger nextNewUser = new AtomicInteger();
+
+    private String baseUrl;
+    private volatile boolean recording;
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("auth.pbkdf2.iterations") == null) {
+            System.setProperty("auth.pbkdf2.iterations", "1000");
+        }
+
+        EmbeddedServer server = new EmbeddedServer();
+        int port = server.start(Path.of(System.getProperty("loadtest.projectDir", ".")));
+        try {
+            new LoadTestHarness().run("http://localhost:" + port + "/app/");
+        } finally {
+            server.stop();
+        }
+        System.exit(0);
+    }
+
+    void run(String baseUrl) throws Exception {
+        this.baseUrl = baseUrl;
+        for (int a = 0; a < ACTIONS.length; a++) {
+            histograms[a] = new LatencyHistogram();
+            errors[a] = new LongAdder();
+        }
+
+        seedUsers();
+
+        System.out.println("Warmup: " + warmupSeconds + "s at " + rate + " req/s");
+        drive(warmupSeconds);
+        for (LatencyHistogram h : histograms) {
+            h.reset();
+        }
+        for (LongAdder e : errors) {
+            e.reset();
+        }
+
+        System.out.println("Measuring: " + durationSeconds + "s at " + rate + " req/s");
+        recording = true;
+        long start = System.nanoTime();
+        drive(durationSeconds);
+        double elapsed = (System.nanoTime() - start) / 1_000_000_000.0;
+        recording = false;
+
+        report(elapsed);
+    }
+
+    // One bulkRegister request per SEED_BATCH users (the servlet's bulkMaxRows default)
+    private void seedUsers() throws Exception {
+        long start = System.nanoTime();
+        String summary = "";
+        for (int from = 0; from < seedUsers; from += SEED_BATCH) {
+            StringBuilder csv = new StringBuilder("username,password\n");
+            for (int i = from; i < Math.min(seedUsers, from + SEED_BATCH); i++) {
+                csv.append("seed").append(i).append(',').append("pw-").append(i).append('\n');
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "auth?action=bulkRegister"))
+                    .header("Content-Type", "text/csv")
+                    .header("X-Bulk-Secret", EmbeddedServer.BULK_SECRET)
+                    .POST(HttpRequest.BodyPublishers.ofString(csv.toString()))
+                    .build();
+
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("bulkRegister answered " + response.statusCode());
+            }
+            String body = response.body().trim();
+            summary = body.substring(body.lastIndexOf('\n') + 1);
+        }
+        System.out.printf("Seeded %d users in %d ms (last request: %s)%n", seedUsers, (System.nanoTime() - start) / 1_000_000, summary);
+    }
+
+    // Sends rate * seconds requests on schedule, then waits for the stragglers
+    private void drive(int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long total = (long) rate * seconds;
+        long intervalNanos = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+
+            int action = pickAction();
+            client.sendAsync(buildRequest(action), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        long latency = System.nanoTime() - due;
+                        inFlight.release();
+                        if (!recording) {
+                            return;
+                        }
+                        histograms[action].recordNanos(latency);
+                        if (failure != null || response.statusCode() >= 500) {
+                            errors[action].increment();
+                        }
+                    });
+        }
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    private HttpRequest buildRequest(int action) {
+        if (action == 3) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "hello")).GET().build();
+        }
+
+        String form;
+        if (action == 0) {
+            int n = nextNewUser.getAndIncrement();
+            form = "action=register&username=load" + n + "&password=pw-" + n;
+        } else if (action == 1) {
+            int n = ThreadLocalRandom.current().nextInt(seedUsers);
+            form = "action=login&username=seed" + n + "&password=" + URLEncoder.encode("pw-" + n, StandardCharsets.UTF_8);
+        } else {
+            form = "action=logout";
+        }
+        return HttpRequest.newBuilder(URI.create(baseUrl + "auth"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private int pickAction() {
+        int roll = ThreadLocalRandom.current().nextInt(cumulativeMix[cumulativeMix.length - 1]);
+        for (int a = 0; a < cumulativeMix.length; a++) {
+            if (roll < cumulativeMix[a]) {
+                return a;
+            }
+        }
+        return cumulativeMix.length - 1;
+    }
+
+    private void report(double elapsedSeconds) {
+        long totalRequests = 0;
+        System.out.println();
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s%n", "action", "requests", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (int a = 0; a < ACTIONS.length; a++) {
+            LatencyHistogram h = histograms[a];
+            totalRequests += h.getCount();
+            System.out.printf("%-10s %10d %8d %10.2f %10.2f %10.2f %10.2f%n", ACTIONS[a], h.getCount(), errors[a].sum(),
+                    h.getPercentileNanos(50) / 1e6, h.getPercentileNanos(99) / 1e6,
+                    h.getPercentileNanos(99.9) / 1e6, h.getMaxNanos() / 1e6);
+        }
+        System.out.printf("%nThroughput: %.1f req/s (target %d req/s)%n", totalRequests / elapsedSeconds, rate);
+    }
+
+    static int[] parseMix(String mix) {
+        int[] weights = new int[ACTIONS.length];
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            for (int a = 0; a < ACTIONS.length; a++) {
+                if (ACTIONS[a].equals(kv[0].trim())) {
+                    weights[a] = Integer.parseInt(kv[1].trim());
+                }
+            }
+        }
+        int[] cumulative = new int[ACTIONS.length];
+        int sum = 0;
+        for (int a = 0; a < ACTIONS.length; a++) {
+            sum += weights[a];
+            cumulative[a] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("loadtest.mix has no positive weights: " + mix);
+        }
+        return cumulative;
+    }
+}
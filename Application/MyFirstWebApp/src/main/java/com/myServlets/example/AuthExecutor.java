@@ -0,0 +1,70 @@
+package com.myServlets.example;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Small, bounded thread pool that runs the JDBC part of AuthServlet off the Tomcat request threads.
+// When both the workers and the queue are full, execute() throws RejectedExecutionException
+// and the servlet answers 503 instead of piling up more waiting requests.
+public class AuthExecutor {
+
+    // Name under which the servlet publishes its executor (read by MetricsServlet)
+    public static final String CONTEXT_ATTRIBUTE = "authExecutor";
+
+    private final ThreadPoolExecutor pool;
+    private final LongAdder rejected = new LongAdder();
+
+    public AuthExecutor(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread t = new Thread(task, "auth-db-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), factory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public void execute(Runnable task) {
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return pool.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -1,58 +1,378 @@
 package com.myServlets.example;
 
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AuthServlet extends HttpServlet {
 
     // Use the DAO helper
     private final UserDAO userDAO = new UserDAO();
 
+    // Async mode: register/login run on a bounded DB executor instead of the request thread
+    private boolean asyncMode;
+    private long asyncTimeoutMillis;
+    private AuthExecutor dbExecutor;
+
+    // Bulk registration is an admin import: off unless enabled, and then only with the shared secret
+    static final String BULK_SECRET_HEADER = "X-Bulk-Secret";
+    private boolean bulkEnabled;
+    private byte[] bulkSecret;
+    private int bulkMaxRows;
+    // Rows per JDBC batch / transaction in bulk registration
+    private int bulkChunkSize;
+
+    // Failed-login throttles, checked before any DB work
+    private LoginThrottle userThrottle;
+    private LoginThrottle ipThrottle;
+
+    // session.mode=token: signed cookie instead of an HttpSession (null in container mode)
+    private SessionTokens sessionTokens;
+
+    @Override
+    public void init() throws ServletException {
+        asyncMode = Boolean.parseBoolean(initParam("asyncMode", "false"));
+        asyncTimeoutMillis = Long.parseLong(initParam("asyncTimeoutMillis", "10000"));
+        bulkChunkSize = Integer.parseInt(initParam("bulkChunkSize", "500"));
+        bulkMaxRows = Integer.parseInt(initParam("bulkMaxRows", "10000"));
+        String secret = DatabaseConfig.setting("auth.bulk.secret", null);
+        bulkSecret = (secret != null) ? secret.getBytes(StandardCharsets.UTF_8) : null;
+        bulkEnabled = Boolean.parseBoolean(initParam("bulkRegisterEnabled", "false"));
+        if (bulkEnabled && bulkSecret == null) {
+            bulkEnabled = false;
+            System.out.println("AuthServlet bulkRegister disabled: auth.bulk.secret is not set");
+        }
+
+        userThrottle = LoginThrottle.fromSettings("auth.throttle.user", 5, 30);
+        ipThrottle = LoginThrottle.fromSettings("auth.throttle.ip", 30, 2);
+        getServletContext().setAttribute("loginThrottles", new LoginThrottle[] {userThrottle, ipThrottle});
+
+        if ("token".equalsIgnoreCase(DatabaseConfig.setting("session.mode", "container"))) {
+            sessionTokens = SessionTokens.fromSettings();
+            getServletContext().setAttribute("sessionTokens", sessionTokens);
+            System.out.println("AuthServlet session mode: signed token cookie");
+        }
+
+        if (asyncMode) {
+            int threads = Integer.parseInt(initParam("dbThreads", "10"));
+            int queueSize = Integer.parseInt(initParam("dbQueueSize", "100"));
+            dbExecutor = new AuthExecutor(threads, queueSize);
+            getServletContext().setAttribute(AuthExecutor.CONTEXT_ATTRIBUTE, dbExecutor);
+            System.out.println("AuthServlet async mode: " + threads + " DB threads, queue " + queueSize);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        getServletContext().removeAttribute("sessionTokens");
+        getServletContext().removeAttribute("loginThrottles");
+        if (dbExecutor != null) {
+            getServletContext().removeAttribute(AuthExecutor.CONTEXT_ATTRIBUTE);
+            dbExecutor.shutdown();
+        }
+    }
+
+    // GET auth: the welcome page again for whoever is already logged in, the login page otherwise
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String user = currentUser(req);
+        if (user == null) {
+            resp.sendRedirect("login.jsp");
+            return;
+        }
+        req.setAttribute("username", user);
+        forward(req, resp, "welcome.jsp");
+    }
+
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String action = req.getParameter("action");
 
+        // Throttled logins are answered right here: no executor slot, no pool connection, no hashing
+        if ("login".equals(action) && !loginAllowed(req)) {
+            rejectThrottledLogin(req, resp);
+            return;
+        }
+
+        // Only the actions that touch the database are worth moving off the request thread
+        boolean needsDatabase = "register".equals(action) || "login".equals(action);
+        if (asyncMode && needsDatabase && req.isAsyncSupported()) {
+            handleAsync(action, req, resp);
+            return;
+        }
+
+        try {
+            handleAction(action, req, resp);
+        } catch (RejectedExecutionException e) {
+            overloaded(resp); // Password-hash pool is saturated
+        }
+    }
+
+    private void handleAction(String action, HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         if ("register".equals(action)) {
             handleRegister(req, resp);
         } else if ("login".equals(action)) {
             handleLogin(req, resp);
         } else if ("logout".equals(action)) {
             handleLogout(req, resp);
+        } else if ("bulkRegister".equals(action)) {
+            // Long-running import: stays on the request thread rather than holding a DB worker
+            handleBulkRegister(req, resp);
         }
     }
 
+    private void handleAsync(String action, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        // Everything the worker needs is read here: once the request times out, req/resp may be recycled
+        String user = req.getParameter("username");
+        String pass = req.getParameter("password");
+        String remoteAddr = req.getRemoteAddr();
+
+        // Whoever flips this first (timeout listener or worker) owns the response
+        AtomicBoolean done = new AtomicBoolean();
+        AsyncContext ctx = req.startAsync();
+        ctx.setTimeout(asyncTimeoutMillis);
+        ctx.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                // DB work took too long: answer for it, the late worker's result is discarded
+                if (done.compareAndSet(false, true)) {
+                    resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                    ctx.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) { }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                done.set(true);
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) { }
+        });
+
+        RequestTimings timings = RequestTimings.of(req);
+        try {
+            dbExecutor.execute(() -> {
+                RequestTimings.bind(timings); // DB/hash time spent on this worker counts for the request
+                try {
+                    boolean success;
+                    try {
+                        success = "register".equals(action)
+                                ? userDAO.registerUser(user, pass)
+                                : checkLogin(user, pass, remoteAddr);
+                    } catch (RejectedExecutionException e) {
+                        if (done.compareAndSet(false, true)) {
+                            overloaded(resp); // Password-hash pool is saturated
+                            ctx.complete();
+                        }
+                        return;
+                    }
+
+                    if (!done.compareAndSet(false, true)) {
+                        return; // Timed out meanwhile: the listener already answered
+                    }
+                    if ("register".equals(action)) {
+                        registered(req, resp, success);
+                    } else {
+                        loggedIn(req, resp, user, success);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    if (done.compareAndSet(false, true)) {
+                        try {
+                            resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                            ctx.complete();
+                        } catch (IOException ignored) {
+                            // Client is gone
+                        }
+                    }
+                } finally {
+                    RequestTimings.unbind();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Backpressure: every DB thread is busy and the queue is full
+            if (done.compareAndSet(false, true)) {
+                overloaded(resp);
+                ctx.complete();
+            }
+        }
+    }
+
+    private void overloaded(HttpServletResponse resp) throws IOException {
+        resp.setHeader("Retry-After", "1");
+        resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
     private void handleRegister(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String user = req.getParameter("username");
         String pass = req.getParameter("password");
 
         // Use Database Logic
-        boolean success = userDAO.registerUser(user, pass);
+        registered(req, resp, userDAO.registerUser(user, pass));
+    }
 
+    private void registered(HttpServletRequest req, HttpServletResponse resp, boolean success) throws IOException {
         if (success) {
-            resp.sendRedirect("login.jsp?msg=RegisteredSuccessfully");
+            redirect(req, resp, "login.jsp?msg=RegisteredSuccessfully");
         } else {
-            resp.sendRedirect("register.jsp?error=UserExists");
+            redirect(req, resp, "register.jsp?error=UserExists");
         }
     }
 
+    // Body: CSV lines "username,password" (optional header). Send as text/csv to auth?action=bulkRegister.
+    // Response: one "line,status,username" row per input row, streamed as each chunk commits.
+    private void handleBulkRegister(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        if (!bulkEnabled) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        String secret = req.getHeader(BULK_SECRET_HEADER);
+        if (secret == null || !MessageDigest.isEqual(bulkSecret, secret.getBytes(StandardCharsets.UTF_8))) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        resp.setContentType("text/plain;charset=UTF-8");
+        PrintWriter out = resp.getWriter();
+
+        List<Integer> lineNumbers = new ArrayList<>(bulkChunkSize);
+        List<String> usernames = new ArrayList<>(bulkChunkSize);
+        List<String> passwords = new ArrayList<>(bulkChunkSize);
+        int[] totals = new int[UserDAO.BulkStatus.values().length];
+        long start = System.nanoTime();
+
+        BufferedReader reader = req.getReader();
+        String line;
+        int lineNumber = 0;
+        int rows = 0;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.trim().equalsIgnoreCase("username,password"))) {
+                    continue;
+                }
+                if (++rows > bulkMaxRows) {
+                    out.println("# row limit " + bulkMaxRows + " reached: line " + lineNumber + " and after were ignored");
+                    break;
+                }
+
+                // Usernames cannot contain commas, passwords may
+                int comma = line.indexOf(',');
+                lineNumbers.add(lineNumber);
+                usernames.add(comma < 0 ? line.trim() : line.substring(0, comma).trim());
+                passwords.add(comma < 0 ? null : line.substring(comma + 1));
+
+                if (usernames.size() == bulkChunkSize) {
+                    writeBulkChunk(out, lineNumbers, usernames, passwords, totals);
+                }
+            }
+            if (!usernames.isEmpty()) {
+                writeBulkChunk(out, lineNumbers, usernames, passwords, totals);
+            }
+        } catch (RejectedExecutionException e) {
+            // Hash pool is saturated. Earlier chunks are committed and already streamed (the response
+            // is committed, so no 503 now); this chunk and the rest of the body were not imported.
+            out.println("# overloaded: line " + lineNumbers.get(0) + " and after were not imported, retry them later");
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder summary = new StringBuilder("# ");
+        for (UserDAO.BulkStatus status : UserDAO.BulkStatus.values()) {
+            summary.append(status.name().toLowerCase()).append('=').append(totals[status.ordinal()]).append(' ');
+        }
+        out.println(summary.append("millis=").append(millis));
+    }
+
+    private void writeBulkChunk(PrintWriter out, List<Integer> lineNumbers, List<String> usernames,
+                                List<String> passwords, int[] totals) {
+        UserDAO.BulkStatus[] statuses = userDAO.registerUsers(usernames, passwords);
+        for (int i = 0; i < statuses.length; i++) {
+            totals[statuses[i].ordinal()]++;
+            out.println(lineNumbers.get(i) + "," + statuses[i] + "," + usernames.get(i));
+        }
+        out.flush();
+
+        lineNumbers.clear();
+        usernames.clear();
+        passwords.clear();
+    }
+
     private void handleLogin(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String user = req.getParameter("username");
         String pass = req.getParameter("password");
 
-        // Use Database Logic
+        loggedIn(req, resp, user, checkLogin(user, pass, req.getRemoteAddr()));
+    }
+
+    // Use Database Logic; failures are charged to the throttles whether or not anyone sees the answer
+    private boolean checkLogin(String user, String pass, String remoteAddr) {
         if (userDAO.isValidUser(user, pass)) {
-            HttpSession session = req.getSession();
-            session.setAttribute("username", user);
+            return true;
+        }
+        if (user != null) {
+            userThrottle.recordFailure(user.toLowerCase(Locale.ROOT));
+        }
+        ipThrottle.recordFailure(remoteAddr);
+        return false;
+    }
+
+    private void loggedIn(HttpServletRequest req, HttpServletResponse resp, String user, boolean valid)
+            throws ServletException, IOException {
+        if (valid) {
+            if (sessionTokens != null) {
+                sessionTokens.addCookie(req, resp, user);
+            } else {
+                HttpSession session = req.getSession();
+                session.setAttribute("username", user);
+            }
             req.setAttribute("username", user);
-            req.getRequestDispatcher("welcome.jsp").forward(req, resp);
+            forward(req, resp, "welcome.jsp");
         } else {
             req.setAttribute("errorMessage", "Invalid Username or Password!");
-            req.getRequestDispatcher("login.jsp").forward(req, resp);
+            forward(req, resp, "login.jsp");
+        }
+    }
+
+    // Token mode: the signed cookie, checked without any server-side state. Container mode: the HttpSession.
+    private String currentUser(HttpServletRequest req) {
+        if (sessionTokens != null) {
+            return sessionTokens.currentUser(req);
         }
+        HttpSession session = req.getSession(false);
+        return (session != null) ? (String) session.getAttribute("username") : null;
+    }
+
+    // Usernames are case-insensitive in MySQL, so "Admin" and "admin" share a bucket
+    private boolean loginAllowed(HttpServletRequest req) {
+        String user = req.getParameter("username");
+        return ipThrottle.isAllowed(req.getRemoteAddr())
+                && (user == null || userThrottle.isAllowed(user.toLowerCase(Locale.ROOT)));
+    }
+
+    private void rejectThrottledLogin(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setStatus(429); // Too Many Requests
+        resp.setHeader("Retry-After", "30");
+        req.setAttribute("errorMessage", "Too many failed login attempts. Please wait and try again.");
+        req.getRequestDispatcher("login.jsp").forward(req, resp);
     }
 
     private void handleLogout(HttpServletRequest req, HttpServletResponse resp) throws IOException {
@@ -60,7 +380,35 @@ public class AuthServlet extends HttpServlet {
         if (session != null) {
             session.invalidate();
         }
-        resp.sendRedirect("login.jsp");
+        if (sessionTokens != null) {
+            // Stateless: the browser drops the cookie; the token itself stays valid until it expires
+            sessionTokens.clearCookie(req, resp);
+        }
+        redirect(req, resp, "login.jsp");
+    }
+
+    // In async mode the container must render the JSP, so we dispatch instead of forwarding
+    private void forward(HttpServletRequest req, HttpServletResponse resp, String page) throws ServletException, IOException {
+        if (req.isAsyncStarted()) {
+            RequestTimings.markDispatch(); // LatencyFilter measures the JSP render when the request completes
+            req.getAsyncContext().dispatch("/" + page);
+        } else {
+            long start = System.nanoTime();
+            req.getRequestDispatcher(page).forward(req, resp);
+            RequestTimings.add(RequestTimings.FORWARD, System.nanoTime() - start);
+        }
+    }
+
+    private void redirect(HttpServletRequest req, HttpServletResponse resp, String location) throws IOException {
+        resp.sendRedirect(location);
+        if (req.isAsyncStarted()) {
+            req.getAsyncContext().complete();
+        }
+    }
+
+    private String initParam(String name, String defaultValue) {
+        String value = getInitParameter(name);
+        return (value != null) ? value : defaultValue;
     }
 }
 
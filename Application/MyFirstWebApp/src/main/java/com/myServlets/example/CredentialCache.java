@@ -0,0 +1,206 @@
+package com.myServlets.example;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounded, in-process cache of recently verified logins.
+// Sits in front of UserDAO.isValidUser so a burst of logins doesn't need a pool connection each.
+// Keys are lower-cased: MySQL matches usernames case-insensitively, so "Bob" and "bob" are one user.
+public class CredentialCache {
+
+    // Marker for "this username does not exist" (negative caching)
+    private static final byte[] UNKNOWN_USER = new byte[0];
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    // Passwords are never kept as-is: we store an HMAC keyed with a per-process random secret
+    private final SecretKeySpec digestKey;
+
+    // Access-ordered LinkedHashMap = simple LRU. Guarded by "this".
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Counters (LongAdder so hot paths don't fight over one cache line)
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // Bumped on every invalidation. A DB answer read before a concurrent write must not be cached.
+    private long generation;
+
+    private static final class Entry {
+        final byte[] digest;
+        final long expiresAt;
+
+        Entry(byte[] digest, long expiresAt) {
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public CredentialCache(int maxEntries, long ttlSeconds, long negativeTtlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.negativeTtlNanos = negativeTtlSeconds * 1_000_000_000L;
+
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.digestKey = new SecretKeySpec(secret, "HmacSHA256");
+
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CredentialCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // auth.cache.maxEntries / .ttlSeconds / .negativeTtlSeconds (system property, then context-param)
+    public static CredentialCache fromSettings() {
+        return new CredentialCache(
+                DatabaseConfig.intSetting("auth.cache.maxEntries", 10_000),
+                DatabaseConfig.longSetting("auth.cache.ttlSeconds", 300),
+                DatabaseConfig.longSetting("auth.cache.negativeTtlSeconds", 30));
+    }
+
+    public enum Result { VALID, UNKNOWN_USER, MISS }
+
+    // Answers from memory when possible; MISS means "go ask the database"
+    public Result lookup(String username, String password) {
+        if (username == null || password == null) {
+            return Result.MISS;
+        }
+        String key = key(username);
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return Result.MISS;
+        }
+
+        if (entry.digest == UNKNOWN_USER) {
+            negativeHits.increment();
+            return Result.UNKNOWN_USER;
+        }
+
+        if (MessageDigest.isEqual(entry.digest, digest(key, password))) {
+            hits.increment();
+            return Result.VALID;
+        }
+
+        // Username is cached but the password differs. The DB is the source of truth
+        // (the password may have changed elsewhere), so treat it as a miss.
+        misses.increment();
+        return Result.MISS;
+    }
+
+    // Read this BEFORE querying the database and pass it back to putValid/putUnknownUser
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Remember a login the database just confirmed
+    public void putValid(String username, String password, long observedGeneration) {
+        String key = key(username);
+        put(key, new Entry(digest(key, password), System.nanoTime() + ttlNanos), observedGeneration);
+    }
+
+    // Remember that the database has no such username
+    public void putUnknownUser(String username, long observedGeneration) {
+        if (negativeTtlNanos <= 0) {
+            return;
+        }
+        put(key(username), new Entry(UNKNOWN_USER, System.nanoTime() + negativeTtlNanos), observedGeneration);
+    }
+
+    private synchronized void put(String key, Entry entry, long observedGeneration) {
+        if (observedGeneration == generation) {
+            entries.put(key, entry);
+        }
+    }
+
+    // Called whenever a users row is inserted/changed
+    public synchronized void invalidate(String username) {
+        generation++;
+        if (entries.remove(key(username)) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Zeroes the counters (entries stay), e.g. so warmup traffic isn't reported as real hits/misses
+    public void resetCounters() {
+        hits.reset();
+        negativeHits.reset();
+        misses.reset();
+        evictions.reset();
+        invalidations.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    private static String key(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    private byte[] digest(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(digestKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
@@ -2,40 +2,198 @@ package com.myServlets.example;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.servlet.ServletContext;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DatabaseConfig {
 
-    // The Pool Object
-    private static HikariDataSource dataSource;
+    // The Pool Object (created lazily on first use, or eagerly by DatabaseContextListener)
+    private static volatile HikariDataSource dataSource;
 
-    // Static block runs once when the class is loaded
-    static {
-        try {
-            HikariConfig config = new HikariConfig();
+    // Read replicas (db.replicaUrls); an empty router sends every read to the primary
+    private static volatile ReplicaRouter replicaRouter;
+
+    // Where settings come from when they are not given as system properties (web.xml context-params)
+    private static volatile ServletContext servletContext;
+
+    // How long callers wait in getConnection() - the number to watch when sizing the pool
+    private static final LatencyHistogram acquireTimes = new LatencyHistogram();
+
+    // Called once at startup so context-params from web.xml can be used
+    public static void configure(ServletContext context) {
+        servletContext = context;
+    }
+
+    // Lookup order: -Ddb.xxx system property, then web.xml context-param db.xxx, then the default
+    static String setting(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null && servletContext != null) {
+            value = servletContext.getInitParameter(name);
+        }
+        return (value != null && !value.isBlank()) ? value.trim() : defaultValue;
+    }
+
+    static int intSetting(String name, int defaultValue) {
+        return Integer.parseInt(setting(name, String.valueOf(defaultValue)));
+    }
+
+    static long longSetting(String name, long defaultValue) {
+        return Long.parseLong(setting(name, String.valueOf(defaultValue)));
+    }
+
+    public static boolean isEagerInit() {
+        return "eager".equalsIgnoreCase(setting("db.initMode", "lazy"));
+    }
 
-            // Database Credentials (Match your Docker setup)
-            config.setJdbcUrl("jdbc:mysql://localhost:3306/user_auth");
-            config.setUsername("root");
-            config.setPassword("root");
+    // Creates the pool if it does not exist yet. Safe to call from many threads.
+    public static HikariDataSource getDataSource() throws SQLException {
+        HikariDataSource ds = dataSource;
+        if (ds == null) {
+            synchronized (DatabaseConfig.class) {
+                ds = dataSource;
+                if (ds == null) {
+                    ds = createDataSource();
+                    dataSource = ds;
+                }
+            }
+        }
+        return ds;
+    }
 
-            // Pool Settings
-            config.setMaximumPoolSize(10); // Max 10 connections active at once
-            config.setMinimumIdle(2);      // Always keep 2 ready
-            config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+    private static HikariDataSource createDataSource() throws SQLException {
+        try {
+            // Database Credentials (defaults match the Docker setup)
+            String jdbcUrl = setting("db.url", "jdbc:mysql://localhost:3306/user_auth");
+            HikariConfig config = poolConfig("user-auth", jdbcUrl, longSetting("db.connectionTimeoutMs", 30_000));
 
-            dataSource = new HikariDataSource(config);
-            System.out.println("Database Connection Pool Initialized Successfully!");
+            HikariDataSource ds = new HikariDataSource(config);
+            System.out.println("Database Connection Pool Initialized Successfully! (max="
+                    + config.getMaximumPoolSize() + ", minIdle=" + config.getMinimumIdle() + ")");
+            return ds;
 
         } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Error connecting to the database", e);
+            // Not fatal: the next getConnection() tries again
+            throw new SQLException("Error connecting to the database", e);
+        }
+    }
+
+    // Settings shared by the primary and the replica pools
+    private static HikariConfig poolConfig(String poolName, String jdbcUrl, long connectionTimeoutMs) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+
+        config.setJdbcUrl(jdbcUrl);
+        config.setUsername(setting("db.username", "root"));
+        config.setPassword(setting("db.password", "root"));
+        config.setDriverClassName(setting("db.driverClassName", "com.mysql.cj.jdbc.Driver"));
+
+        // Pool Settings
+        config.setMaximumPoolSize(intSetting("db.maximumPoolSize", 10)); // Max connections active at once
+        config.setMinimumIdle(intSetting("db.minimumIdle", 2));          // Always keep this many ready
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setIdleTimeout(longSetting("db.idleTimeoutMs", 600_000));
+        config.setMaxLifetime(longSetting("db.maxLifetimeMs", 1_800_000));
+
+        // Statement caching only means something to the MySQL driver
+        if (jdbcUrl.startsWith("jdbc:mysql:")) {
+            config.addDataSourceProperty("cachePrepStmts", setting("db.cachePrepStmts", "true"));
+            config.addDataSourceProperty("prepStmtCacheSize", setting("db.prepStmtCacheSize", "250"));
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", setting("db.prepStmtCacheSqlLimit", "2048"));
+            config.addDataSourceProperty("useServerPrepStmts", setting("db.useServerPrepStmts", "true"));
+            // Turns addBatch()/executeBatch() of INSERTs into multi-row INSERTs (bulk registration)
+            config.addDataSourceProperty("rewriteBatchedStatements", setting("db.rewriteBatchedStatements", "true"));
+        }
+        return config;
+    }
+
+    // Built on first use. A replica that is down at startup does not stop the app: its pool
+    // starts empty and the router ejects it once reads against it fail.
+    public static ReplicaRouter getReplicaRouter() {
+        ReplicaRouter router = replicaRouter;
+        if (router == null) {
+            synchronized (DatabaseConfig.class) {
+                router = replicaRouter;
+                if (router == null) {
+                    router = createReplicaRouter();
+                    replicaRouter = router;
+                }
+            }
         }
+        return router;
+    }
+
+    // null until the first read/write has built the router (metrics must not open replica pools)
+    public static ReplicaRouter peekReplicaRouter() {
+        return replicaRouter;
+    }
+
+    private static ReplicaRouter createReplicaRouter() {
+        List<ReplicaRouter.Replica> replicas = new ArrayList<>();
+        String urls = setting("db.replicaUrls", "");
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + replicas.size();
+            // Fail fast: a login would rather fall back to the primary than wait 30 s for a dead replica
+            HikariConfig config = poolConfig("user-auth-" + name, url.trim(), longSetting("db.replica.connectionTimeoutMs", 1_000));
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new ReplicaRouter.Replica(name, new HikariDataSource(config)));
+            System.out.println("Read replica " + name + " added: " + url.trim());
+        }
+        return new ReplicaRouter(replicas,
+                longSetting("db.replica.readYourWritesMs", 5_000),
+                intSetting("db.replica.maxFailures", 3),
+                longSetting("db.replica.ejectMs", 30_000),
+                intSetting("db.replica.maxTrackedWrites", 100_000));
+    }
+
+    // Where a read-only query should run (see ReplicaRouter). Writes use getConnection().
+    public static ReplicaRouter.Route routeRead(String username) {
+        return getReplicaRouter().route(username);
+    }
+
+    // Marks the username as just written, so this node reads it back from the primary for a while
+    public static void recordWrite(String username) {
+        getReplicaRouter().recordWrite(username);
     }
 
     // This method is what the Servlet will call to get a connection
     public static Connection getConnection() throws SQLException {
-        return dataSource.getConnection();
+        long start = System.nanoTime();
+        try {
+            return getDataSource().getConnection();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            acquireTimes.recordNanos(elapsed);
+            RequestTimings.add(RequestTimings.DB_ACQUIRE, elapsed);
+        }
+    }
+
+    public static LatencyHistogram getAcquireTimes() {
+        return acquireTimes;
+    }
+
+    // null until the pool has been created
+    public static HikariPoolMXBean getPoolStats() {
+        HikariDataSource ds = dataSource;
+        return (ds != null) ? ds.getHikariPoolMXBean() : null;
+    }
+
+    public static void shutdown() {
+        synchronized (DatabaseConfig.class) {
+            if (replicaRouter != null) {
+                replicaRouter.close();
+                replicaRouter = null;
+            }
+            if (dataSource != null) {
+                dataSource.close();
+                dataSource = null;
+            }
+        }
     }
-}
\ No newline at end of file
+}
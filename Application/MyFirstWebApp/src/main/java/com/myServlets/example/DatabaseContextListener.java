@@ -0,0 +1,30 @@
+package com.myServlets.example;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import java.sql.SQLException;
+
+// Hands the web.xml context-params to DatabaseConfig and owns the pool's lifecycle.
+public class DatabaseContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        DatabaseConfig.configure(sce.getServletContext());
+
+        if (DatabaseConfig.isEagerInit()) {
+            try {
+                DatabaseConfig.getDataSource();
+                DatabaseConfig.getReplicaRouter();
+            } catch (SQLException e) {
+                // Keep deploying: the pool is created on the first request instead
+                System.out.println("Eager pool init failed, falling back to lazy init: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        PasswordHasher.shutdownShared();
+        DatabaseConfig.shutdown();
+    }
+}
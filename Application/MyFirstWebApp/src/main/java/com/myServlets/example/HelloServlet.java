@@ -1,18 +1,60 @@
 package com.myServlets.example;
 
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
 
 // This class extends HttpServlet, which makes it a "Web Component"
 public class HelloServlet extends HttpServlet {
 
+    private static final String HTML = "<html><body>\n"
+            + "<h1>Hello World!</h1>\n"
+            + "<p>This response was generated by Java code in HelloServlet.</p>\n"
+            + "</body></html>\n";
+
+    // Cacheable mode: the page never changes, so encode it (and its gzip variant) once at startup
+    private boolean cacheable;
+    private byte[] body;
+    private byte[] gzipBody;
+    private String etag;
+    private String gzipEtag;
+    private String cacheControl;
+
+    @Override
+    public void init() throws ServletException {
+        cacheable = !"false".equalsIgnoreCase(getInitParameter("cacheable"));
+        if (!cacheable) {
+            return;
+        }
+
+        String maxAge = getInitParameter("maxAgeSeconds");
+        cacheControl = "public, max-age=" + ((maxAge != null) ? maxAge : "60");
+
+        body = HTML.getBytes(StandardCharsets.UTF_8);
+        gzipBody = gzip(body);
+
+        // Strong ETags must differ per encoding
+        String hash = sha256Hex(body).substring(0, 16);
+        etag = "\"" + hash + "\"";
+        gzipEtag = "\"" + hash + "-gz\"";
+    }
+
     // doGet is called when someone visits the URL in a browser
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (cacheable) {
+            writeCached(req, resp);
+            return;
+        }
 
         // 1. Tell the browser we are sending HTML
         resp.setContentType("text/html");
@@ -26,4 +68,97 @@ public class HelloServlet extends HttpServlet {
         out.println("<p>This response was generated by Java code in HelloServlet.</p>");
         out.println("</body></html>");
     }
-}
\ No newline at end of file
+
+    private void writeCached(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        boolean useGzip = acceptsGzip(req.getHeader("Accept-Encoding"));
+        String tag = useGzip ? gzipEtag : etag;
+
+        resp.setHeader("ETag", tag);
+        resp.setHeader("Cache-Control", cacheControl);
+        resp.setHeader("Vary", "Accept-Encoding");
+
+        // Client already has this exact version: headers only
+        if (matches(req.getHeader("If-None-Match"), tag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] payload = useGzip ? gzipBody : body;
+        resp.setContentType("text/html;charset=UTF-8");
+        if (useGzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentLength(payload.length);
+
+        ServletOutputStream out = resp.getOutputStream();
+        out.write(payload);
+    }
+
+    // "gzip" listed and not disabled with q=0
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || !acceptEncoding.contains("gzip")) {
+            return false;
+        }
+        // Common case ("gzip, deflate, br"): no quality values, nothing to parse
+        if (!acceptEncoding.contains("q=")) {
+            return true;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // If-None-Match may list several ETags (possibly weak, W/"...") or be "*"
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] data) throws ServletException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            gz.write(data);
+        } catch (IOException e) {
+            throw new ServletException("Could not pre-compress HelloServlet body", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String sha256Hex(byte[] data) throws ServletException {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new ServletException(e);
+        }
+    }
+}
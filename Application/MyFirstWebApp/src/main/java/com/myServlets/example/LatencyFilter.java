@@ -0,0 +1,118 @@
+package com.myServlets.example;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// Records per-endpoint latency (total + DB acquire / DB query / hashing / JSP forward) for /auth and /hello.
+// Histograms are preallocated, so recording only bumps counters.
+public class LatencyFilter extends HttpFilter {
+
+    public static final int AUTH_REGISTER = 0;
+    public static final int AUTH_LOGIN = 1;
+    public static final int AUTH_LOGOUT = 2;
+    public static final int AUTH_BULK_REGISTER = 3;
+    public static final int AUTH_OTHER = 4;
+    public static final int HELLO = 5;
+    public static final String[] ENDPOINTS = {
+            "auth_register", "auth_login", "auth_logout", "auth_bulkRegister", "auth_other", "hello"
+    };
+
+    private static final LatencyHistogram[][] histograms = new LatencyHistogram[ENDPOINTS.length][RequestTimings.PHASE_NAMES.length];
+
+    static {
+        for (int e = 0; e < ENDPOINTS.length; e++) {
+            for (int p = 0; p < RequestTimings.PHASE_NAMES.length; p++) {
+                histograms[e][p] = new LatencyHistogram();
+            }
+        }
+    }
+
+    // Sync requests reuse their thread's RequestTimings. One that goes async escapes to other threads,
+    // so that thread simply starts with a fresh instance next time.
+    private static final ThreadLocal<RequestTimings> REUSABLE = ThreadLocal.withInitial(RequestTimings::new);
+
+    // Stateless: the timings travel with the request, so every async request shares this listener
+    private static final AsyncListener RECORD_ON_COMPLETE = new AsyncListener() {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            RequestTimings timings = RequestTimings.of(event.getSuppliedRequest());
+            if (timings != null) {
+                record(timings);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) { }
+
+        @Override
+        public void onError(AsyncEvent event) { }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) { }
+    };
+
+    public static LatencyHistogram getHistogram(int endpoint, int phase) {
+        return histograms[endpoint][phase];
+    }
+
+    @Override
+    protected void doFilter(HttpServletRequest req, HttpServletResponse res, FilterChain chain) throws IOException, ServletException {
+        RequestTimings timings = REUSABLE.get();
+        timings.reset(endpointOf(req));
+        req.setAttribute(RequestTimings.REQUEST_ATTRIBUTE, timings);
+        RequestTimings.bind(timings);
+
+        try {
+            chain.doFilter(req, res);
+        } finally {
+            RequestTimings.unbind();
+        }
+
+        if (req.isAsyncStarted()) {
+            // The response is finished later, on another thread
+            REUSABLE.remove();
+            req.getAsyncContext().addListener(RECORD_ON_COMPLETE);
+        } else {
+            record(timings);
+        }
+    }
+
+    private static void record(RequestTimings timings) {
+        long now = System.nanoTime();
+        if (timings.dispatchNanos != 0) {
+            timings.phaseNanos[RequestTimings.FORWARD] += now - timings.dispatchNanos;
+        }
+        timings.phaseNanos[RequestTimings.TOTAL] = now - timings.startNanos;
+
+        LatencyHistogram[] phases = histograms[timings.endpoint];
+        for (int p = 0; p < phases.length; p++) {
+            // Skip phases the request never went through, so e.g. logout doesn't flood db_query with zeros
+            if (p == RequestTimings.TOTAL || timings.phaseNanos[p] > 0) {
+                phases[p].recordNanos(timings.phaseNanos[p]);
+            }
+        }
+    }
+
+    private static int endpointOf(HttpServletRequest req) {
+        if ("/hello".equals(req.getServletPath())) {
+            return HELLO;
+        }
+        String action = req.getParameter("action");
+        if ("register".equals(action)) {
+            return AUTH_REGISTER;
+        } else if ("login".equals(action)) {
+            return AUTH_LOGIN;
+        } else if ("logout".equals(action)) {
+            return AUTH_LOGOUT;
+        } else if ("bulkRegister".equals(action)) {
+            return AUTH_BULK_REGISTER;
+        }
+        return AUTH_OTHER;
+    }
+}
@@ -0,0 +1,128 @@
+package com.myServlets.example;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-bucket latency histogram (HdrHistogram-style, ~12% precision).
+// recordNanos() never allocates: it only increments counters in preallocated arrays.
+// Counters are striped by thread so concurrent requests rarely hit the same cache line.
+public class LatencyHistogram {
+
+    // 8 sub-buckets per power of two -> each bucket is at most 1/8 (12.5%) wide
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2; // values below 16 get their own bucket
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - 4) * SUB_BUCKETS;
+
+    private static final int STRIPES = 4;
+
+    // Layout: [stripe][bucket], plus count/sum/max per stripe at the end
+    private static final int STRIPE_WIDTH = BUCKETS + 3;
+    private static final int COUNT = BUCKETS;
+    private static final int SUM = BUCKETS + 1;
+    private static final int MAX = BUCKETS + 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * STRIPE_WIDTH);
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int base = stripe() * STRIPE_WIDTH;
+        cells.incrementAndGet(base + bucketIndex(nanos));
+        cells.incrementAndGet(base + COUNT);
+        cells.addAndGet(base + SUM, nanos);
+
+        long max;
+        while (nanos > (max = cells.get(base + MAX))) {
+            if (cells.compareAndSet(base + MAX, max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            count += cells.get(s * STRIPE_WIDTH + COUNT);
+        }
+        return count;
+    }
+
+    public long getMaxNanos() {
+        long max = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            max = Math.max(max, cells.get(s * STRIPE_WIDTH + MAX));
+        }
+        return max;
+    }
+
+    public double getMeanNanos() {
+        long count = 0;
+        long sum = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            count += cells.get(s * STRIPE_WIDTH + COUNT);
+            sum += cells.get(s * STRIPE_WIDTH + SUM);
+        }
+        return (count == 0) ? 0 : (double) sum / count;
+    }
+
+    // Upper bound of the bucket holding the requested percentile (0-100)
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int s = 0; s < STRIPES; s++) {
+            int base = s * STRIPE_WIDTH;
+            for (int b = 0; b < BUCKETS; b++) {
+                long c = cells.get(base + b);
+                counts[b] += c;
+                total += c;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        if (rank < 1) {
+            rank = 1;
+        }
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(b), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= 4
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - 4) * SUB_BUCKETS + mantissa;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 4;
+        int mantissa = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (SUB_BUCKETS + mantissa) * width;
+        return lower + width - 1;
+    }
+
+    private static int stripe() {
+        return (int) (Thread.currentThread().getId() & (STRIPES - 1));
+    }
+}
@@ -0,0 +1,134 @@
+package com.myServlets.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Brute-force throttle for failed logins: token buckets kept in a count-min-sketch layout.
+//
+// Each key (a username or an IP) hashes to one bucket per row. A failed login takes a token from
+// all of them; as in a count-min sketch, the fullest of them is the key's estimate, so a login is
+// refused only once every one is empty. Buckets refill at a fixed rate.
+// Memory is fixed (rows x width longs, whatever the number of keys) and there are no locks:
+// each bucket is one packed long updated with CAS, and different keys land on different slots.
+// Another key's failures only lock a key out if they collide in every row, and a collision can
+// only make a key stricter than configured, never more lenient.
+public class LoginThrottle {
+
+    private static final int ROWS = 2;
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL};
+
+    // Packed bucket: [48 bits: last refill, ms since 'epoch'] [16 bits: tokens * 1000]
+    private static final int TOKEN_BITS = 16;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long MILLI = 1000;
+
+    private final AtomicLongArray buckets;
+    private final int widthMask;
+    private final long capacityMilli;
+    private final long refillMillisPerToken;
+    private final long epoch = System.currentTimeMillis();
+
+    private final LongAdder rejected = new LongAdder();
+
+    // capacity: failed attempts allowed in a burst (max 65); refillSeconds: one attempt back every N seconds
+    public LoginThrottle(int capacity, double refillSeconds, int width) {
+        if (capacity < 1 || capacity * MILLI > TOKEN_MASK) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + TOKEN_MASK / MILLI);
+        }
+        int size = Integer.highestOneBit(Math.max(width, 16));
+        this.buckets = new AtomicLongArray(ROWS * size);
+        this.widthMask = size - 1;
+        this.capacityMilli = capacity * MILLI;
+        this.refillMillisPerToken = Math.max(1, Math.round(refillSeconds * 1000));
+    }
+
+    // Settings prefix e.g. "auth.throttle.user" -> auth.throttle.user.capacity / .refillSeconds / .width
+    public static LoginThrottle fromSettings(String prefix, int capacity, double refillSeconds) {
+        return new LoginThrottle(
+                DatabaseConfig.intSetting(prefix + ".capacity", capacity),
+                Double.parseDouble(DatabaseConfig.setting(prefix + ".refillSeconds", String.valueOf(refillSeconds))),
+                DatabaseConfig.intSetting(prefix + ".width", 1 << 16));
+    }
+
+    // True while the key still has at least one failed attempt left. Read-only.
+    public boolean isAllowed(String key) {
+        if (key == null) {
+            return true;
+        }
+        long now = clock();
+        long hash = baseHash(key);
+        for (int row = 0; row < ROWS; row++) {
+            if (tokensAt(buckets.get(slot(hash, row)), now) >= MILLI) {
+                return true;
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    // Charges one token to every bucket of the key (called after a failed login)
+    public void recordFailure(String key) {
+        if (key == null) {
+            return;
+        }
+        long now = clock();
+        long hash = baseHash(key);
+        for (int row = 0; row < ROWS; row++) {
+            int slot = slot(hash, row);
+            while (true) {
+                long packed = buckets.get(slot);
+                long tokens = Math.max(0, tokensAt(packed, now) - MILLI);
+                if (buckets.compareAndSet(slot, packed, pack(now, tokens))) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // Starts at 1 so a stored bucket is never 0 (0 means "never used")
+    private long clock() {
+        return System.currentTimeMillis() - epoch + 1;
+    }
+
+    // Tokens after refilling up to 'now'. An untouched slot (0) is a full bucket.
+    private long tokensAt(long packed, long now) {
+        if (packed == 0) {
+            return capacityMilli;
+        }
+        long tokens = packed & TOKEN_MASK;
+        long elapsed = now - (packed >>> TOKEN_BITS);
+        if (elapsed > 0) {
+            tokens = Math.min(capacityMilli, tokens + elapsed * MILLI / refillMillisPerToken);
+        }
+        return tokens;
+    }
+
+    private static long pack(long now, long tokens) {
+        return (now << TOKEN_BITS) | tokens;
+    }
+
+    int slot(long hash, int row) {
+        return row * (widthMask + 1) + (int) (mix(hash ^ SEEDS[row]) & widthMask);
+    }
+
+    static long baseHash(String key) {
+        // FNV-1a over the UTF-8 bytes: stable, cheap and independent of String.hashCode()
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
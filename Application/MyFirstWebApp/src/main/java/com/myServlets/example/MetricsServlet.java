@@ -0,0 +1,100 @@
+package com.myServlets.example;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+// Plain-text "name value" lines, easy to curl or scrape locally
+public class MetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("text/plain;charset=UTF-8");
+        resp.setHeader("Cache-Control", "no-store");
+
+        PrintWriter out = resp.getWriter();
+
+        Object warmupMillis = getServletContext().getAttribute(WarmupListener.WARMUP_MILLIS_ATTRIBUTE);
+        out.println("app_ready " + (Boolean.TRUE.equals(getServletContext().getAttribute(WarmupListener.READY_ATTRIBUTE)) ? 1 : 0));
+        out.println("app_startup_warmup_ms " + ((warmupMillis != null) ? warmupMillis : 0));
+
+        CredentialCache cache = UserDAO.getCredentialCache();
+        out.println("credential_cache_size " + cache.size());
+        out.println("credential_cache_hits " + cache.getHits());
+        out.println("credential_cache_negative_hits " + cache.getNegativeHits());
+        out.println("credential_cache_misses " + cache.getMisses());
+        out.println("credential_cache_evictions " + cache.getEvictions());
+        out.println("credential_cache_invalidations " + cache.getInvalidations());
+
+        AuthExecutor executor = (AuthExecutor) getServletContext().getAttribute(AuthExecutor.CONTEXT_ATTRIBUTE);
+        if (executor != null) {
+            out.println("auth_executor_active " + executor.getActiveCount());
+            out.println("auth_executor_queued " + executor.getQueuedCount());
+            out.println("auth_executor_completed " + executor.getCompletedCount());
+            out.println("auth_executor_rejected " + executor.getRejectedCount());
+        }
+
+        LoginThrottle[] throttles = (LoginThrottle[]) getServletContext().getAttribute("loginThrottles");
+        if (throttles != null) {
+            out.println("login_throttle_user_rejected " + throttles[0].getRejectedCount());
+            out.println("login_throttle_ip_rejected " + throttles[1].getRejectedCount());
+        }
+
+        out.println("session_container_active " + SessionStats.getActiveSessions());
+        out.println("session_container_created " + SessionStats.getCreatedSessions());
+        SessionTokens tokens = (SessionTokens) getServletContext().getAttribute("sessionTokens");
+        if (tokens != null) {
+            out.println("session_token_issued " + tokens.getIssuedCount());
+            out.println("session_token_rejected " + tokens.getRejectedCount());
+            out.println("session_token_avg_bytes " + tokens.getAverageTokenBytes());
+        }
+
+        HikariPoolMXBean pool = DatabaseConfig.getPoolStats();
+        out.println("db_pool_initialized " + ((pool != null) ? 1 : 0));
+        if (pool != null) {
+            out.println("db_pool_active " + pool.getActiveConnections());
+            out.println("db_pool_idle " + pool.getIdleConnections());
+            out.println("db_pool_total " + pool.getTotalConnections());
+            out.println("db_pool_pending_threads " + pool.getThreadsAwaitingConnection());
+        }
+        printHistogram(out, "db_pool_acquire", DatabaseConfig.getAcquireTimes());
+
+        ReplicaRouter router = DatabaseConfig.peekReplicaRouter();
+        if (router != null) {
+            out.println("db_reads_primary " + router.getPrimaryReadCount());
+            for (ReplicaRouter.Replica replica : router.getReplicas()) {
+                String prefix = "db_" + replica.getName().replace('-', '_') + "_";
+                out.println(prefix + "outstanding " + replica.getOutstanding());
+                out.println(prefix + "served " + replica.getServedCount());
+                out.println(prefix + "failures " + replica.getFailureCount());
+                out.println(prefix + "ejections " + replica.getEjectionCount());
+                out.println(prefix + "ejected " + (replica.isEjected() ? 1 : 0));
+            }
+        }
+
+        // Per endpoint: total latency plus the phases it actually went through
+        for (int e = 0; e < LatencyFilter.ENDPOINTS.length; e++) {
+            for (int p = 0; p < RequestTimings.PHASE_NAMES.length; p++) {
+                LatencyHistogram histogram = LatencyFilter.getHistogram(e, p);
+                if (p == RequestTimings.TOTAL || histogram.getCount() > 0) {
+                    printHistogram(out, "http_" + LatencyFilter.ENDPOINTS[e] + "_" + RequestTimings.PHASE_NAMES[p], histogram);
+                }
+            }
+        }
+    }
+
+    // Latencies are reported in microseconds
+    static void printHistogram(PrintWriter out, String name, LatencyHistogram histogram) {
+        out.println(name + "_count " + histogram.getCount());
+        out.println(name + "_mean_us " + Math.round(histogram.getMeanNanos() / 1_000.0));
+        out.println(name + "_p50_us " + histogram.getPercentileNanos(50) / 1_000);
+        out.println(name + "_p90_us " + histogram.getPercentileNanos(90) / 1_000);
+        out.println(name + "_p99_us " + histogram.getPercentileNanos(99) / 1_000);
+        out.println(name + "_p999_us " + histogram.getPercentileNanos(99.9) / 1_000);
+        out.println(name + "_max_us " + histogram.getMaxNanos() / 1_000);
+    }
+}
@@ -0,0 +1,193 @@
+package com.myServlets.example;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// PBKDF2-HMAC-SHA256 password hashing.
+// Stored format: pbkdf2_sha256$<iterations>$<base64 salt>$<base64 hash>
+// Hashing is deliberately slow, so it runs on a small CPU-sized pool: at most one hash per core,
+// a bounded queue behind it, and RejectedExecutionException (-> 503) when that queue is full.
+public class PasswordHasher {
+
+    static final String PREFIX = "pbkdf2_sha256$";
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+    private final ThreadPoolExecutor cpuPool;
+
+    public PasswordHasher(int iterations, int threads, int queueSize) {
+        this.iterations = iterations;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.cpuPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), task -> {
+                    Thread t = new Thread(task, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.cpuPool.allowCoreThreadTimeOut(true); // Idle workers go away, nothing lingers after undeploy
+    }
+
+    // Shared instance, built on first use so web.xml context-params are already known
+    private static volatile PasswordHasher shared;
+
+    public static PasswordHasher getInstance() {
+        PasswordHasher hasher = shared;
+        if (hasher == null) {
+            synchronized (PasswordHasher.class) {
+                hasher = shared;
+                if (hasher == null) {
+                    hasher = new PasswordHasher(
+                            DatabaseConfig.intSetting("auth.pbkdf2.iterations", 310_000),
+                            DatabaseConfig.intSetting("auth.hash.threads", Runtime.getRuntime().availableProcessors()),
+                            DatabaseConfig.intSetting("auth.hash.queueSize", 256));
+                    shared = hasher;
+                }
+            }
+        }
+        return hasher;
+    }
+
+    // Called on undeploy so no hashing threads outlive the webapp
+    public static void shutdownShared() {
+        synchronized (PasswordHasher.class) {
+            if (shared != null) {
+                shared.shutdown();
+                shared = null;
+            }
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    // Hashes on the CPU pool and waits for the result
+    public String hash(String password) {
+        long start = System.nanoTime();
+        try {
+            return await(cpuPool.submit(() -> hashNow(password, iterations)));
+        } finally {
+            RequestTimings.add(RequestTimings.HASH, System.nanoTime() - start);
+        }
+    }
+
+    // Hashes many passwords in parallel (bulk registration).
+    // Submits one pool-width at a time so a big chunk never overflows the queue.
+    public List<String> hashAll(List<String> passwords) {
+        long start = System.nanoTime();
+        int width = cpuPool.getMaximumPoolSize();
+        List<String> hashes = new ArrayList<>(passwords.size());
+        List<Future<String>> inFlight = new ArrayList<>(width);
+
+        for (int from = 0; from < passwords.size(); from += width) {
+            int to = Math.min(from + width, passwords.size());
+            for (String password : passwords.subList(from, to)) {
+                inFlight.add(cpuPool.submit(() -> hashNow(password, iterations)));
+            }
+            for (Future<String> future : inFlight) {
+                hashes.add(await(future));
+            }
+            inFlight.clear();
+        }
+        RequestTimings.add(RequestTimings.HASH, System.nanoTime() - start);
+        return hashes;
+    }
+
+    // Checks a password against a stored value on the CPU pool
+    public boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // Legacy plaintext row (e.g. the seeded admin user): cheap, so no need for the pool
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        long start = System.nanoTime();
+        try {
+            return await(cpuPool.submit(() -> verifyNow(password, stored)));
+        } finally {
+            RequestTimings.add(RequestTimings.HASH, System.nanoTime() - start);
+        }
+    }
+
+    // True for plaintext rows and hashes made with fewer iterations than we use today
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    public void shutdown() {
+        cpuPool.shutdownNow();
+    }
+
+    static String hashNow(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    static boolean verifyNow(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false; // Malformed stored value
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
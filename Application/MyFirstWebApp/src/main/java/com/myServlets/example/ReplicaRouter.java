@@ -0,0 +1,202 @@
+package com.myServlets.example;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Picks where a read goes: one of the replica pools, or the primary.
+//
+//   - Least outstanding requests: the healthy replica with the fewest reads in flight wins
+//     (ties broken from a random starting point, so idle replicas share the load).
+//   - Read-your-writes: a username written through this node in the last readYourWritesMs
+//     is read from the primary, so "register then log in" never hits replication lag.
+//   - Ejection: after maxFailures consecutive errors a replica is skipped for ejectMillis,
+//     then it gets traffic again; one more failure ejects it straight away.
+// When no replica is usable the read goes to the primary.
+public class ReplicaRouter {
+
+    public static final class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final LongAdder served = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder ejections = new LongAdder();
+        private volatile long ejectedUntil;
+
+        Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public long getServedCount() {
+            return served.sum();
+        }
+
+        public long getFailureCount() {
+            return failures.sum();
+        }
+
+        public long getEjectionCount() {
+            return ejections.sum();
+        }
+
+        public boolean isEjected() {
+            return System.currentTimeMillis() < ejectedUntil;
+        }
+
+        public HikariDataSource getDataSource() {
+            return dataSource;
+        }
+    }
+
+    // One routed read. Always release() it; call succeeded() or failed() once the query is done.
+    public final class Route {
+        private final Replica replica; // null = primary
+        private boolean released;
+
+        private Route(Replica replica) {
+            this.replica = replica;
+        }
+
+        public boolean isReplica() {
+            return replica != null;
+        }
+
+        public Connection getConnection() throws SQLException {
+            if (replica == null) {
+                return DatabaseConfig.getConnection();
+            }
+            long start = System.nanoTime();
+            try {
+                return replica.dataSource.getConnection();
+            } finally {
+                RequestTimings.add(RequestTimings.DB_ACQUIRE, System.nanoTime() - start);
+            }
+        }
+
+        public void succeeded() {
+            if (replica != null) {
+                replica.served.increment();
+                replica.consecutiveFailures.set(0);
+            }
+        }
+
+        public void failed() {
+            if (replica != null) {
+                replica.failures.increment();
+                if (replica.consecutiveFailures.incrementAndGet() >= ejectionThreshold) {
+                    replica.ejectedUntil = System.currentTimeMillis() + ejectMillis;
+                    replica.ejections.increment();
+                    System.out.println("Replica " + replica.name + " ejected for " + ejectMillis + " ms");
+                }
+            }
+        }
+
+        public void release() {
+            if (replica != null && !released) {
+                released = true;
+                replica.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private final List<Replica> replicas;
+    private final int ejectionThreshold;
+    private final long ejectMillis;
+    private final long readYourWritesMillis;
+    private final LongAdder primaryReads = new LongAdder();
+
+    // username (lowercased, as MySQL compares them) -> time of the last write from this node
+    private final Map<String, Long> recentWrites;
+
+    public ReplicaRouter(List<Replica> replicas, long readYourWritesMillis, int maxFailures, long ejectMillis, int maxTrackedWrites) {
+        this.replicas = List.copyOf(replicas);
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.ejectionThreshold = Math.max(1, maxFailures);
+        this.ejectMillis = ejectMillis;
+        this.recentWrites = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                // Oldest first (insertion order), so this also drops expired entries as new writes come in
+                return size() > maxTrackedWrites
+                        || System.currentTimeMillis() - eldest.getValue() > readYourWritesMillis;
+            }
+        };
+    }
+
+    public Route route(String username) {
+        if (replicas.isEmpty() || wroteRecently(username)) {
+            primaryReads.increment();
+            return new Route(null);
+        }
+
+        Replica best = null;
+        int start = ThreadLocalRandom.current().nextInt(replicas.size());
+        for (int k = 0; k < replicas.size(); k++) {
+            Replica candidate = replicas.get((start + k) % replicas.size());
+            if (!candidate.isEjected() && (best == null || candidate.outstanding.get() < best.outstanding.get())) {
+                best = candidate;
+            }
+        }
+        if (best == null) {
+            primaryReads.increment();
+            return new Route(null);
+        }
+        best.outstanding.incrementAndGet();
+        return new Route(best);
+    }
+
+    // Called after every write that a following read must see
+    public void recordWrite(String username) {
+        if (replicas.isEmpty() || username == null) {
+            return;
+        }
+        String key = username.toLowerCase(Locale.ROOT);
+        synchronized (recentWrites) {
+            recentWrites.remove(key); // re-insert so the map stays in write order
+            recentWrites.put(key, System.currentTimeMillis());
+        }
+    }
+
+    private boolean wroteRecently(String username) {
+        if (username == null) {
+            return false;
+        }
+        Long writtenAt;
+        synchronized (recentWrites) {
+            writtenAt = recentWrites.get(username.toLowerCase(Locale.ROOT));
+        }
+        return writtenAt != null && System.currentTimeMillis() - writtenAt <= readYourWritesMillis;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public long getPrimaryReadCount() {
+        return primaryReads.sum();
+    }
+
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.dataSource.close();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.myServlets.example;
+
+import jakarta.servlet.ServletRequest;
+import java.util.Arrays;
+
+// Where one request spent its time. Created by LatencyFilter, bound to whichever thread is
+// currently working on the request (request thread, or an auth-db worker in async mode),
+// and filled in by DatabaseConfig / UserDAO / PasswordHasher / AuthServlet.
+public class RequestTimings {
+
+    public static final int TOTAL = 0;
+    public static final int DB_ACQUIRE = 1;
+    public static final int DB_QUERY = 2;
+    public static final int HASH = 3;
+    public static final int FORWARD = 4;
+    public static final String[] PHASE_NAMES = {"total", "db_acquire", "db_query", "hash", "forward"};
+
+    static final String REQUEST_ATTRIBUTE = RequestTimings.class.getName();
+
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    // Index into LatencyFilter.ENDPOINTS
+    int endpoint;
+    long startNanos;
+    final long[] phaseNanos = new long[PHASE_NAMES.length];
+
+    // Set when an async request hands rendering to a JSP via AsyncContext.dispatch
+    volatile long dispatchNanos;
+
+    // Starts timing a new request; LatencyFilter reuses one instance per thread for sync requests
+    void reset(int endpoint) {
+        this.endpoint = endpoint;
+        startNanos = System.nanoTime();
+        Arrays.fill(phaseNanos, 0);
+        dispatchNanos = 0;
+    }
+
+    public static RequestTimings of(ServletRequest req) {
+        return (RequestTimings) req.getAttribute(REQUEST_ATTRIBUTE);
+    }
+
+    public static void bind(RequestTimings timings) {
+        CURRENT.set(timings);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    // No-op when nothing is bound (e.g. code running outside a request)
+    public static void add(int phase, long nanos) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.phaseNanos[phase] += nanos;
+        }
+    }
+
+    public static void markDispatch() {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.dispatchNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.myServlets.example;
+
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionListener;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts live container sessions so /metrics can compare them with token mode
+public class SessionStats implements HttpSessionListener {
+
+    private static final LongAdder active = new LongAdder();
+    private static final LongAdder created = new LongAdder();
+
+    @Override
+    public void sessionCreated(HttpSessionEvent se) {
+        active.increment();
+        created.increment();
+    }
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        active.decrement();
+    }
+
+    public static long getActiveSessions() {
+        return active.sum();
+    }
+
+    public static long getCreatedSessions() {
+        return created.sum();
+    }
+}
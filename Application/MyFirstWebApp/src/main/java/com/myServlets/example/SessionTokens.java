@@ -0,0 +1,150 @@
+package com.myServlets.example;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
+
+// Stateless login tokens for session.mode=token.
+// Cookie value: base64url(username) "." expiryEpochSeconds "." base64url(HMAC-SHA256 of the first two parts)
+// The server keeps nothing per user, so the session footprint is just the cookie the browser sends back.
+public class SessionTokens {
+
+    public static final String COOKIE_NAME = "AUTH_TOKEN";
+
+    private static final Base64.Encoder B64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder issuedBytes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public SessionTokens(byte[] secret, long ttlSeconds) {
+        this.key = new SecretKeySpec(secret, "HmacSHA256");
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    // auth.token.secret should be set when running more than one node (or to survive restarts).
+    // Without it a random key is used and every restart logs everyone out.
+    public static SessionTokens fromSettings() {
+        String configured = DatabaseConfig.setting("auth.token.secret", null);
+        byte[] secret;
+        if (configured != null) {
+            secret = configured.getBytes(StandardCharsets.UTF_8);
+        } else {
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        }
+        return new SessionTokens(secret, DatabaseConfig.longSetting("auth.token.ttlSeconds", 1800));
+    }
+
+    public String issue(String username) {
+        long expires = System.currentTimeMillis() / 1000 + ttlSeconds;
+        String payload = B64_ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8)) + "." + expires;
+        String token = payload + "." + B64_ENCODER.encodeToString(sign(payload));
+
+        issued.increment();
+        issuedBytes.add(token.length());
+        return token;
+    }
+
+    // Returns the username, or null if the token is malformed, forged or expired
+    public String verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int lastDot = token.lastIndexOf('.');
+        int firstDot = token.indexOf('.');
+        if (firstDot <= 0 || lastDot <= firstDot) {
+            rejected.increment();
+            return null;
+        }
+
+        try {
+            String payload = token.substring(0, lastDot);
+            byte[] signature = B64_DECODER.decode(token.substring(lastDot + 1));
+            long expires = Long.parseLong(token.substring(firstDot + 1, lastDot));
+
+            if (!MessageDigest.isEqual(signature, sign(payload)) || expires < System.currentTimeMillis() / 1000) {
+                rejected.increment();
+                return null;
+            }
+            return new String(B64_DECODER.decode(token.substring(0, firstDot)), StandardCharsets.UTF_8);
+
+        } catch (IllegalArgumentException e) {
+            rejected.increment();
+            return null;
+        }
+    }
+
+    public void addCookie(HttpServletRequest req, HttpServletResponse resp, String username) {
+        Cookie cookie = new Cookie(COOKIE_NAME, issue(username));
+        cookie.setHttpOnly(true);
+        cookie.setSecure(req.isSecure());
+        cookie.setPath(cookiePath(req));
+        cookie.setMaxAge((int) ttlSeconds);
+        cookie.setAttribute("SameSite", "Lax");
+        resp.addCookie(cookie);
+    }
+
+    public void clearCookie(HttpServletRequest req, HttpServletResponse resp) {
+        Cookie cookie = new Cookie(COOKIE_NAME, "");
+        cookie.setHttpOnly(true);
+        cookie.setPath(cookiePath(req));
+        cookie.setMaxAge(0);
+        resp.addCookie(cookie);
+    }
+
+    // Username of the logged-in user in token mode, or null
+    public String currentUser(HttpServletRequest req) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE_NAME.equals(cookie.getName())) {
+                return verify(cookie.getValue());
+            }
+        }
+        return null;
+    }
+
+    public long getIssuedCount() {
+        return issued.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // Average bytes per user: the whole per-session cost in token mode (held by the client, not the heap)
+    public long getAverageTokenBytes() {
+        long count = issued.sum();
+        return (count == 0) ? 0 : issuedBytes.sum() / count;
+    }
+
+    private static String cookiePath(HttpServletRequest req) {
+        String path = req.getContextPath();
+        return path.isEmpty() ? "/" : path;
+    }
+
+    private byte[] sign(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
@@ -4,44 +4,291 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 
 public class UserDAO {
 
+    // Matches users.username VARCHAR(50)
+    static final int MAX_USERNAME_LENGTH = 50;
+
+    // The statements every login/registration uses (WarmupListener prepares these exact strings)
+    static final String SELECT_PASSWORD_SQL = "SELECT password FROM users WHERE username = ?";
+    static final String INSERT_USER_SQL = "INSERT INTO users (username, password) VALUES (?, ?)";
+    static final String UPDATE_PASSWORD_SQL = "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+
+    // Outcome of one row in a bulk registration
+    public enum BulkStatus { CREATED, DUPLICATE, INVALID, FAILED }
+
+    // Shared by every DAO instance so all servlets see the same cached logins
+    private static final CredentialCache credentialCache = CredentialCache.fromSettings();
+
+    private final PasswordHasher hasher = PasswordHasher.getInstance();
+
+    public static CredentialCache getCredentialCache() {
+        return credentialCache;
+    }
+
     // Returns true if registration successful, false if user exists
     public boolean registerUser(String username, String password) {
-        String sql = "INSERT INTO users (username, password) VALUES (?, ?)";
+        if (username == null || username.isBlank() || password == null || password.isEmpty()) {
+            return false;
+        }
+        // Taken usernames are refused before paying for a hash; the UNIQUE index still settles a race
+        // with a concurrent registration. Asks the primary: a lagging replica could miss a fresh user.
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            if (selectPassword(conn, username) != null) {
+                return false;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        // Hash with the connection back in the pool: the slow part must not hold one
+        String passwordHash = hasher.hash(password);
+        return registerSingle(username, passwordHash) == BulkStatus.CREATED;
+    }
+
+    // Returns true if login valid
+    public boolean isValidUser(String username, String password) {
+        switch (credentialCache.lookup(username, password)) {
+            case VALID:
+                return true;
+            case UNKNOWN_USER:
+                return false;
+            default:
+                break; // MISS -> ask the database
+        }
+
+        long cacheGeneration = credentialCache.generation();
+
+        String stored;
+        try {
+            stored = readStoredPassword(username);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+        if (stored == null) {
+            credentialCache.putUnknownUser(username, cacheGeneration);
+            return false;
+        }
+
+        // Verify in the JVM, after the connection is back in the pool
+        if (!hasher.verify(password, stored)) {
+            return false;
+        }
+        credentialCache.putValid(username, password, cacheGeneration);
+
+        // Plaintext rows and hashes with an old work factor are upgraded on successful login
+        if (hasher.needsRehash(stored)) {
+            upgradeHash(username, stored, hasher.hash(password));
+        }
+        return true;
+    }
+
+    // Stored password for the user, or null if there is no such user. Read-only, so it may run on a
+    // replica; if the replica errors, the same read is retried once on the primary.
+    private String readStoredPassword(String username) throws SQLException {
+        ReplicaRouter.Route route = DatabaseConfig.routeRead(username);
+        try (Connection conn = route.getConnection()) {
+            String stored = selectPassword(conn, username);
+            route.succeeded();
+            return stored;
+        } catch (SQLException e) {
+            route.failed();
+            if (!route.isReplica()) {
+                throw e;
+            }
+            System.out.println("Replica read failed, retrying on primary: " + e.getMessage());
+        } finally {
+            route.release();
+        }
+
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            return selectPassword(conn, username);
+        }
+    }
+
+    // Only the stored hash, found through the UNIQUE index on username
+    private String selectPassword(Connection conn, String username) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_PASSWORD_SQL)) {
+            stmt.setString(1, username);
+
+            long queryStart = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            } finally {
+                RequestTimings.add(RequestTimings.DB_QUERY, System.nanoTime() - queryStart);
+            }
+        }
+    }
+
+    private void upgradeHash(String username, String oldValue, String newHash) {
+        // "AND password = ?" -> never overwrite a password that changed in the meantime
+        String sql = UPDATE_PASSWORD_SQL;
 
-        // "try-with-resources" -> Automatically closes connection/statement
         try (Connection conn = DatabaseConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setString(1, username);
-            stmt.setString(2, password);
+            stmt.setString(1, newHash);
+            stmt.setString(2, username);
+            stmt.setString(3, oldValue);
+            long queryStart = System.nanoTime();
             stmt.executeUpdate();
-            return true;
+            RequestTimings.add(RequestTimings.DB_QUERY, System.nanoTime() - queryStart);
+            DatabaseConfig.recordWrite(username);
 
         } catch (SQLException e) {
-            e.printStackTrace(); // Likely duplicate username
-            return false;
+            e.printStackTrace(); // Not fatal: we try again on the next login
         }
     }
 
-    // Returns true if login valid
-    public boolean isValidUser(String username, String password) {
-        String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
+    // Registers one chunk of users in a single transaction using a JDBC batch.
+    // Returns one status per input row, in the same order.
+    public BulkStatus[] registerUsers(List<String> usernames, List<String> passwords) {
+        int size = usernames.size();
+        BulkStatus[] statuses = new BulkStatus[size];
+
+        // 1. Reject bad rows and repeats inside the chunk without asking the database
+        Set<String> seen = new HashSet<>();
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            String user = usernames.get(i);
+            String pass = passwords.get(i);
+            if (user == null || user.isBlank() || user.length() > MAX_USERNAME_LENGTH
+                    || pass == null || pass.isEmpty()) {
+                statuses[i] = BulkStatus.INVALID;
+            } else if (!seen.add(user)) {
+                statuses[i] = BulkStatus.DUPLICATE;
+            } else {
+                candidates.add(i);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return statuses;
+        }
+
+        // 2. One query finds every username that is already taken
+        Set<String> existing;
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            existing = findExistingUsernames(conn, usernames, candidates);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            for (int i : candidates) {
+                statuses[i] = BulkStatus.FAILED;
+            }
+            return statuses;
+        }
+
+        List<Integer> toInsert = new ArrayList<>();
+        List<String> plainPasswords = new ArrayList<>();
+        for (int i : candidates) {
+            if (existing.contains(usernames.get(i).toLowerCase(Locale.ROOT))) {
+                statuses[i] = BulkStatus.DUPLICATE;
+            } else {
+                toInsert.add(i);
+                plainPasswords.add(passwords.get(i));
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return statuses;
+        }
+
+        // 3. Hash in parallel on the CPU pool, without holding a connection
+        List<String> hashes = hasher.hashAll(plainPasswords);
+
+        // 4. Everything goes in as one batch (one multi-row INSERT with rewriteBatchedStatements)
+        try (Connection conn = DatabaseConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_USER_SQL)) {
+                for (int k = 0; k < toInsert.size(); k++) {
+                    stmt.setString(1, usernames.get(toInsert.get(k)));
+                    stmt.setString(2, hashes.get(k));
+                    stmt.addBatch();
+                }
+                long queryStart = System.nanoTime();
+                stmt.executeBatch();
+                conn.commit();
+                RequestTimings.add(RequestTimings.DB_QUERY, System.nanoTime() - queryStart);
+
+                for (int i : toInsert) {
+                    statuses[i] = BulkStatus.CREATED;
+                    DatabaseConfig.recordWrite(usernames.get(i));
+                    credentialCache.invalidate(usernames.get(i));
+                }
+                return statuses;
+
+            } catch (SQLException e) {
+                // Usually a row inserted concurrently (or a case-only duplicate). Redo this chunk row by row
+                // so each row gets its own answer.
+                conn.rollback();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
 
+        for (int k = 0; k < toInsert.size(); k++) {
+            int i = toInsert.get(k);
+            statuses[i] = registerSingle(usernames.get(i), hashes.get(k));
+        }
+        return statuses;
+    }
+
+    private Set<String> findExistingUsernames(Connection conn, List<String> usernames, List<Integer> candidates) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT username FROM users WHERE username IN (");
+        for (int k = 0; k < candidates.size(); k++) {
+            sql.append(k == 0 ? "?" : ",?");
+        }
+        sql.append(')');
+
+        Set<String> existing = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int k = 0; k < candidates.size(); k++) {
+                stmt.setString(k + 1, usernames.get(candidates.get(k)));
+            }
+            long queryStart = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    // MySQL compares usernames case-insensitively, so we do too
+                    existing.add(rs.getString(1).toLowerCase(Locale.ROOT));
+                }
+            } finally {
+                RequestTimings.add(RequestTimings.DB_QUERY, System.nanoTime() - queryStart);
+            }
+        }
+        return existing;
+    }
+
+    // Inserts one already-hashed user
+    private BulkStatus registerSingle(String username, String passwordHash) {
         try (Connection conn = DatabaseConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(INSERT_USER_SQL)) {
 
             stmt.setString(1, username);
-            stmt.setString(2, password);
-
-            ResultSet rs = stmt.executeQuery();
-            return rs.next(); // If a row exists, credentials are valid
+            stmt.setString(2, passwordHash);
+            long queryStart = System.nanoTime();
+            try {
+                stmt.executeUpdate();
+            } finally {
+                RequestTimings.add(RequestTimings.DB_QUERY, System.nanoTime() - queryStart);
+            }
+            DatabaseConfig.recordWrite(username); // Logins for this user read the primary for a while
+            credentialCache.invalidate(username); // Drops any "unknown user" entry
+            return BulkStatus.CREATED;
 
+        } catch (SQLIntegrityConstraintViolationException e) {
+            return BulkStatus.DUPLICATE; // Username already taken
         } catch (SQLException e) {
             e.printStackTrace();
-            return false;
+            return BulkStatus.FAILED;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.myServlets.example;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Startup phase that runs before the app takes traffic (Tomcat only routes requests once
+// every listener's contextInitialized() has returned):
+//   1. opens the pool up to minimumIdle connections
+//   2. prepares UserDAO's statements on each of them (server-side + cached with the MySQL settings)
+//   3. runs synthetic logins so the login path is JIT-compiled before real users arrive
+// Must be registered after DatabaseContextListener in web.xml.
+public class WarmupListener implements ServletContextListener {
+
+    public static final String READY_ATTRIBUTE = "appReady";
+    public static final String WARMUP_MILLIS_ATTRIBUTE = "appWarmupMillis";
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        ServletContext context = sce.getServletContext();
+        long start = System.nanoTime();
+
+        // Ready = warmed up (or warmup turned off); a failed warmup still deploys, but reports app_ready 0
+        boolean ready = true;
+        if (Boolean.parseBoolean(DatabaseConfig.setting("warmup.enabled", "true"))) {
+            try {
+                int connections = warmPool();
+                int logins = warmLogins(DatabaseConfig.intSetting("warmup.logins", 200));
+                int hashes = warmHashing(DatabaseConfig.intSetting("warmup.hashes", 50));
+                System.out.println("Warmup: " + connections + " connections with prepared statements, "
+                        + logins + " synthetic logins, " + hashes + " hash verifications");
+            } catch (Exception e) {
+                // A cold start is slow, not broken: keep deploying
+                ready = false;
+                System.out.println("Warmup skipped: " + e.getMessage());
+            }
+            // Warmup traffic shouldn't show up in the real numbers
+            DatabaseConfig.getAcquireTimes().reset();
+            UserDAO.getCredentialCache().resetCounters();
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        context.setAttribute(WARMUP_MILLIS_ATTRIBUTE, millis);
+        context.setAttribute(READY_ATTRIBUTE, ready);
+        System.out.println("Startup finished in " + millis + " ms, " + (ready ? "ready for traffic" : "serving cold"));
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        sce.getServletContext().removeAttribute(READY_ATTRIBUTE);
+    }
+
+    // Holds minimumIdle connections at once so the pool really opens that many
+    private int warmPool() throws SQLException {
+        HikariDataSource ds = DatabaseConfig.getDataSource();
+        int target = Math.max(1, ds.getMinimumIdle());
+        List<Connection> held = new ArrayList<>(target);
+        try {
+            for (int i = 0; i < target; i++) {
+                Connection conn = DatabaseConfig.getConnection();
+                held.add(conn);
+                prepareStatements(conn);
+            }
+        } finally {
+            for (Connection conn : held) {
+                conn.close();
+            }
+        }
+        return held.size();
+    }
+
+    private void prepareStatements(Connection conn) throws SQLException {
+        for (String sql : new String[] {
+                UserDAO.SELECT_PASSWORD_SQL, UserDAO.INSERT_USER_SQL, UserDAO.UPDATE_PASSWORD_SQL}) {
+            // With cachePrepStmts the closed statement stays in the connection's cache, ready for reuse
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.getParameterMetaData();
+            }
+        }
+    }
+
+    // Unknown-user logins: exercise cache miss -> query -> negative cache, without writing anything
+    private int warmLogins(int count) {
+        UserDAO dao = new UserDAO();
+        CredentialCache cache = UserDAO.getCredentialCache();
+        for (int i = 0; i < count; i++) {
+            String username = "__warmup_" + i;
+            dao.isValidUser(username, "warmup");
+            dao.isValidUser(username, "warmup"); // second call hits the negative cache
+            cache.invalidate(username);
+        }
+        return count;
+    }
+
+    // A few real PBKDF2 verifications so the first user doesn't pay for class loading/JIT of the hasher
+    private int warmHashing(int count) {
+        PasswordHasher hasher = PasswordHasher.getInstance();
+        String stored = PasswordHasher.hashNow("warmup", 1_000);
+        for (int i = 0; i < count; i++) {
+            hasher.verify("warmup", stored);
+        }
+        return count;
+    }
+}
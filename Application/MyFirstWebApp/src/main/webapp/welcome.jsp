@@ -1,4 +1,13 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<%
+    // AuthServlet forwards with a request attribute; opened directly, the user is in the container session
+    if (request.getAttribute("username") == null) {
+        HttpSession existing = request.getSession(false);
+        if (existing != null) {
+            request.setAttribute("username", existing.getAttribute("username"));
+        }
+    }
+%>
 <html>
 <head><title>Welcome</title></head>
 <body>
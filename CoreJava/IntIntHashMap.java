@@ -0,0 +1,250 @@
+/**
+ * Hash map from int keys to int values - HashMap<Integer, Integer> without any objects per entry.
+ * Concepts Covered:
+ * 1. Open addressing: keys and values live in two flat arrays; a collision moves to the next
+ *    slot (linear probing) instead of allocating a linked node.
+ * 2. Free-slot sentinel: key 0 marks an empty slot, and the real key 0 is stored on the side.
+ * 3. Hash mixing: ids are often sequential, so they are scrambled before masking to a slot.
+ * 4. Deletion without tombstones: later entries of the probe chain are shifted back.
+ *
+ * Usage:
+ *   IntIntHashMap ratings = new IntIntHashMap();
+ *   ratings.put(101, 5);
+ *   int r = ratings.get(101);           // missing keys return getMissingValue() (0 by default)
+ *   ratings.addTo(5, 1);                // counting without get + put
+ */
+
+import java.util.Arrays;
+
+public final class IntIntHashMap {
+
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    private static final int FREE = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;       // entries in the arrays (not counting key 0)
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    private final int missingValue;
+
+    public IntIntHashMap() {
+        this(16, 0);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        this(expectedSize, 0);
+    }
+
+    // missingValue: what get() returns for a key that is not in the map
+    public IntIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int get(int key) {
+        return getOrDefault(key, missingValue);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE) {
+            return hasZeroKey;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    // Returns the previous value, or getMissingValue() if the key was new
+    public int put(int key, int value) {
+        if (key == FREE) {
+            int old = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return missingValue;
+    }
+
+    // Adds delta to the value (a missing key starts from getMissingValue()); returns the new value
+    public int addTo(int key, int delta) {
+        if (key == FREE) {
+            zeroValue = (hasZeroKey ? zeroValue : missingValue) + delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return values[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = missingValue + delta;
+        int result = values[slot];
+        if (++size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return result;
+    }
+
+    // Returns the removed value, or getMissingValue() if the key was not there
+    public int remove(int key) {
+        if (key == FREE) {
+            int old = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = false;
+            return old;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return missingValue;
+        }
+        int old = values[slot];
+        shiftKeys(slot);
+        size--;
+        return old;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) {
+            action.accept(FREE, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    private int findSlot(int key) {
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Closes the gap left at 'pos': every later entry of the same probe chain that could live
+    // at the gap moves back into it, so lookups never stop early at a hole
+    private void shiftKeys(int pos) {
+        int last;
+        int k;
+        while (true) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if ((k = keys[pos]) == FREE) {
+                    keys[last] = FREE;
+                    return;
+                }
+                int home = mix(k) & mask;
+                // Movable unless its home slot lies (cyclically) after 'last' and up to 'pos'
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != FREE) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    // Power of two with room for expectedSize entries below the load factor
+    private static int tableSizeFor(int expectedSize) {
+        long needed = Math.max(4, (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1);
+        if (needed > (1 << 30)) {
+            throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    // Golden-ratio multiply, then fold the high bits down so the low (masked) bits depend on all of them
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Hash map from int keys to objects - HashMap<Integer, V> without the Integer keys and entry nodes.
+ * Same layout as IntIntHashMap (open addressing, linear probing, key 0 stored on the side);
+ * only the values array holds references.
+ *
+ * Usage:
+ *   IntObjectMap<EmployeeData> byId = new IntObjectMap<>();
+ *   byId.put(emp.employeeId, emp);
+ *   EmployeeData e = byId.get(101);     // null if missing, like HashMap
+ */
+
+import java.util.Arrays;
+
+public final class IntObjectMap<V> {
+
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private static final int FREE = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;       // entries in the arrays (not counting key 0)
+    private int resizeAt;
+
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public IntObjectMap() {
+        this(16);
+    }
+
+    public IntObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE) {
+            return zeroValue; // null when absent
+        }
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE) {
+            return hasZeroKey;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    // Returns the previous value, or null if the key was new
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key == FREE) {
+            V old = zeroValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                V old = (V) values[slot];
+                values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE) {
+            V old = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            return old;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V old = (V) values[slot];
+        shiftKeys(slot);
+        size--;
+        return old;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(FREE, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, null); // let the values be garbage collected
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    private int findSlot(int key) {
+        int slot = mix(key) & mask;
+        int k;
+        while ((k = keys[slot]) != FREE) {
+            if (k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Backward-shift deletion, see IntIntHashMap.shiftKeys
+    private void shiftKeys(int pos) {
+        int last;
+        int k;
+        while (true) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            while (true) {
+                if ((k = keys[pos]) == FREE) {
+                    keys[last] = FREE;
+                    values[last] = null;
+                    return;
+                }
+                int home = mix(k) & mask;
+                if (last <= pos ? (last >= home || home > pos) : (last >= home && home > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = k;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != FREE) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = Math.max(4, (long) Math.ceil(expectedSize / (double) LOAD_FACTOR) + 1);
+        if (needed > (1 << 30)) {
+            throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
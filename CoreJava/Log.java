@@ -0,0 +1,449 @@
+/**
+ * Small logging facade used by the Part files instead of System.out.println.
+ * Concepts Covered:
+ * 1. Level checks: a disabled level returns after one int comparison (no string building at all).
+ * 2. Parameterized messages: "{} deposited: Rs {}" is formatted later, on the writer thread.
+ * 3. Lock-free ring buffer: many producer threads, one consumer, CAS instead of locks.
+ * 4. Batching: the background writer prints many lines with one write instead of one per line.
+ *
+ * Usage:
+ *   private static final Log LOG = Log.get(BankAccount.class);
+ *   LOG.info("{} deposited: Rs {}", name, amount);
+ *
+ * Settings (-D system properties):
+ *   log.level=INFO           TRACE, DEBUG, INFO, WARN, ERROR or OFF
+ *   log.format=text          text ("12:00:01.123 INFO  [main] BankAccount - message") or json (one object per line)
+ *   log.bufferSize=8192      ring buffer slots (rounded up to a power of two)
+ *   log.dropWhenFull=false   false: a producer waits for space; true: the message is dropped and counted
+ *   log.flushTimeoutMillis=5000  longest Log.flush() waits for the writer
+ *
+ * Messages are written asynchronously. Call Log.flush() before printing directly to System.out
+ * if the order of the two matters; pending messages are also flushed when the JVM exits.
+ */
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class Log {
+
+    public static final int TRACE = 0;
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int ERROR = 4;
+    public static final int OFF = 5;
+
+    private static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR"};
+
+    // Plain static (not volatile): read on every call, so it must be as cheap as possible.
+    // A change made with setLevel() becomes visible to other threads shortly, which is fine for logging.
+    private static int threshold = parseLevel(System.getProperty("log.level", "INFO"));
+
+    private static final boolean JSON = "json".equalsIgnoreCase(System.getProperty("log.format", "text"));
+    private static final boolean DROP_WHEN_FULL = Boolean.getBoolean("log.dropWhenFull");
+    private static final long FLUSH_TIMEOUT_NANOS = Long.getLong("log.flushTimeoutMillis", 5_000) * 1_000_000;
+
+    // ==========================================
+    // RING BUFFER (bounded multi-producer / single-consumer queue)
+    // Each slot has a sequence number that says whose turn it is:
+    //   sequence == position      -> free, a producer may claim it
+    //   sequence == position + 1  -> filled, the writer may read it
+    // Producers claim a position with one CAS on 'tail'; the writer alone moves 'head'.
+    // Slots are allocated once and reused, so logging a message allocates nothing here.
+    // ==========================================
+    private static final class Slot {
+        int level;
+        long timeMillis;
+        String thread;
+        String logger;
+        String template;
+        Object arg0, arg1, arg2;
+        Object[] args; // only for 4+ arguments
+        Throwable error;
+        int argCount;
+    }
+
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(16, Integer.getInteger("log.bufferSize", 8192) * 2 - 1));
+    private static final int MASK = CAPACITY - 1;
+    private static final Slot[] SLOTS = new Slot[CAPACITY];
+    private static final AtomicLongArray SEQUENCES = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static volatile long head; // written by the writer thread only
+
+    private static final LongAdder DROPPED = new LongAdder();
+    private static volatile PrintStream output = System.out;
+    private static final Thread WRITER;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            SLOTS[i] = new Slot();
+            SEQUENCES.set(i, i);
+        }
+        WRITER = new Thread(Log::drainLoop, "log-writer");
+        WRITER.setDaemon(true);
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-shutdown"));
+    }
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    public static void setLevel(int level) {
+        threshold = level;
+    }
+
+    public static void setOutput(PrintStream stream) {
+        flush();
+        output = stream;
+    }
+
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    public boolean isEnabled(int level) {
+        return level >= threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return DEBUG >= threshold;
+    }
+
+    public boolean isInfoEnabled() {
+        return INFO >= threshold;
+    }
+
+    // One overload per argument count, so the common calls do not allocate a varargs array
+    public void debug(String template) {
+        if (DEBUG >= threshold) {
+            publish(DEBUG, template, 0, null, null, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object a) {
+        if (DEBUG >= threshold) {
+            publish(DEBUG, template, 1, a, null, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object a, Object b) {
+        if (DEBUG >= threshold) {
+            publish(DEBUG, template, 2, a, b, null, null, null);
+        }
+    }
+
+    public void debug(String template, Object a, Object b, Object c) {
+        if (DEBUG >= threshold) {
+            publish(DEBUG, template, 3, a, b, c, null, null);
+        }
+    }
+
+    public void info(String template) {
+        if (INFO >= threshold) {
+            publish(INFO, template, 0, null, null, null, null, null);
+        }
+    }
+
+    public void info(String template, Object a) {
+        if (INFO >= threshold) {
+            publish(INFO, template, 1, a, null, null, null, null);
+        }
+    }
+
+    public void info(String template, Object a, Object b) {
+        if (INFO >= threshold) {
+            publish(INFO, template, 2, a, b, null, null, null);
+        }
+    }
+
+    public void info(String template, Object a, Object b, Object c) {
+        if (INFO >= threshold) {
+            publish(INFO, template, 3, a, b, c, null, null);
+        }
+    }
+
+    public void info(String template, Object... args) {
+        if (INFO >= threshold) {
+            publish(INFO, template, args.length, null, null, null, args, null);
+        }
+    }
+
+    public void warn(String template) {
+        if (WARN >= threshold) {
+            publish(WARN, template, 0, null, null, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object a) {
+        if (WARN >= threshold) {
+            publish(WARN, template, 1, a, null, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object a, Object b) {
+        if (WARN >= threshold) {
+            publish(WARN, template, 2, a, b, null, null, null);
+        }
+    }
+
+    public void warn(String template, Object a, Object b, Object c) {
+        if (WARN >= threshold) {
+            publish(WARN, template, 3, a, b, c, null, null);
+        }
+    }
+
+    public void error(String template, Object a) {
+        if (ERROR >= threshold) {
+            publish(ERROR, template, 1, a, null, null, null, null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (ERROR >= threshold) {
+            publish(ERROR, message, 0, null, null, null, null, error);
+        }
+    }
+
+    private void publish(int level, String template, int argCount, Object a, Object b, Object c, Object[] args, Throwable error) {
+        long position = claim();
+        if (position < 0) {
+            DROPPED.increment();
+            return;
+        }
+        Slot slot = SLOTS[(int) (position & MASK)];
+        slot.level = level;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.thread = Thread.currentThread().getName();
+        slot.logger = name;
+        slot.template = template;
+        slot.argCount = argCount;
+        slot.arg0 = a;
+        slot.arg1 = b;
+        slot.arg2 = c;
+        slot.args = args;
+        slot.error = error;
+        SEQUENCES.set((int) (position & MASK), position + 1); // publish: the writer may read it now
+    }
+
+    // Returns the claimed position, or -1 if the buffer is full and messages may be dropped
+    private static long claim() {
+        while (true) {
+            long position = TAIL.get();
+            long sequence = SEQUENCES.get((int) (position & MASK));
+            if (sequence == position) {
+                if (TAIL.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // Full: the writer has not freed this slot from the previous lap yet
+                if (DROP_WHEN_FULL) {
+                    return -1;
+                }
+                LockSupport.unpark(WRITER);
+                Thread.yield();
+            }
+            // sequence > position: another producer claimed it first, retry with the new tail
+        }
+    }
+
+    // ==========================================
+    // WRITER THREAD
+    // Formats everything that is ready into one StringBuilder and prints it in one call.
+    // When there is nothing to do it parks for a moment instead of spinning.
+    // ==========================================
+    private static void drainLoop() {
+        StringBuilder batch = new StringBuilder(64 * 1024);
+        Clock clock = new Clock();
+        while (true) {
+            if (drain(batch, clock) == 0) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private static int drain(StringBuilder batch, Clock clock) {
+        int count = 0;
+        long position = head;
+        while (true) {
+            int index = (int) (position & MASK);
+            if (SEQUENCES.get(index) != position + 1) {
+                break; // nothing more is ready
+            }
+            Slot slot = SLOTS[index];
+            int start = batch.length();
+            try {
+                format(batch, slot, clock);
+            } catch (Throwable t) {
+                // e.g. an argument's toString() threw: that costs one line, not the writer thread
+                batch.setLength(start);
+                formatPlaceholder(batch, slot, clock, t);
+            }
+            slot.arg0 = slot.arg1 = slot.arg2 = null; // don't keep the caller's objects alive
+            slot.args = null;
+            slot.error = null;
+            SEQUENCES.set(index, position + CAPACITY); // free for the producer one lap later
+            position++;
+            count++;
+            if (batch.length() > 60 * 1024) {
+                break;
+            }
+        }
+        if (count > 0) {
+            head = position;
+            PrintStream out = output;
+            out.print(batch);
+            out.flush();
+            batch.setLength(0);
+        }
+        return count;
+    }
+
+    // Keeps the slot's level, time, thread and logger; the message says what went wrong instead
+    private static void formatPlaceholder(StringBuilder batch, Slot slot, Clock clock, Throwable cause) {
+        int start = batch.length();
+        slot.template = "<unformattable log message: " + cause.getClass().getName() + ">";
+        slot.argCount = 0;
+        slot.error = null;
+        try {
+            format(batch, slot, clock);
+        } catch (Throwable t) {
+            batch.setLength(start); // still broken (bad thread or logger name?): skip the line
+        }
+    }
+
+    // Waits until every message logged before this call has been written, or FLUSH_TIMEOUT_NANOS
+    // has passed, or the writer thread is gone: a stuck output must not hang the caller forever.
+    public static void flush() {
+        long target = TAIL.get();
+        long deadline = System.nanoTime() + FLUSH_TIMEOUT_NANOS;
+        while (head < target) {
+            if (Thread.currentThread() == WRITER || !WRITER.isAlive() || System.nanoTime() - deadline > 0) {
+                return;
+            }
+            LockSupport.unpark(WRITER);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private static void format(StringBuilder out, Slot slot, Clock clock) {
+        if (JSON) {
+            out.append("{\"time\":\"");
+            clock.append(out, slot.timeMillis);
+            out
+               .append("\",\"level\":\"").append(LEVEL_NAMES[slot.level])
+               .append("\",\"thread\":");
+            appendJsonString(out, slot.thread);
+            out.append(",\"logger\":\"").append(slot.logger).append("\",\"message\":");
+            int start = out.length();
+            appendMessage(out, slot);
+            String message = out.substring(start);
+            out.setLength(start);
+            appendJsonString(out, message);
+            if (slot.argCount > 0) {
+                out.append(",\"args\":[");
+                for (int i = 0; i < slot.argCount; i++) {
+                    if (i > 0) out.append(',');
+                    appendJsonString(out, String.valueOf(arg(slot, i)));
+                }
+                out.append(']');
+            }
+            if (slot.error != null) {
+                out.append(",\"error\":");
+                appendJsonString(out, String.valueOf(slot.error));
+            }
+            out.append("}\n");
+        } else {
+            clock.append(out, slot.timeMillis);
+            out.append(' ');
+            String level = LEVEL_NAMES[slot.level];
+            out.append(level);
+            for (int i = level.length(); i < 5; i++) out.append(' ');
+            out.append(" [").append(slot.thread).append("] ").append(slot.logger).append(" - ");
+            appendMessage(out, slot);
+            out.append('\n');
+            if (slot.error != null) {
+                StringWriter trace = new StringWriter();
+                slot.error.printStackTrace(new PrintWriter(trace));
+                out.append(trace);
+            }
+        }
+    }
+
+    // "HH:mm:ss.SSS" without a SimpleDateFormat call per line: the "HH:mm:ss." part only
+    // changes once a second, so it is formatted once and reused (writer thread only)
+    private static final class Clock {
+        private final SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.");
+        private long currentSecond = -1;
+        private String secondPrefix;
+
+        void append(StringBuilder out, long timeMillis) {
+            long second = timeMillis / 1000;
+            if (second != currentSecond) {
+                currentSecond = second;
+                secondPrefix = format.format(new Date(timeMillis));
+            }
+            int millis = (int) (timeMillis % 1000);
+            out.append(secondPrefix);
+            if (millis < 100) out.append('0');
+            if (millis < 10) out.append('0');
+            out.append(millis);
+        }
+    }
+
+    // Replaces each "{}" with the next argument
+    private static void appendMessage(StringBuilder out, Slot slot) {
+        String template = slot.template;
+        int next = 0;
+        int from = 0;
+        while (true) {
+            int at = template.indexOf("{}", from);
+            if (at < 0 || next >= slot.argCount) {
+                out.append(template, from, template.length());
+                return;
+            }
+            out.append(template, from, at).append(arg(slot, next++));
+            from = at + 2;
+        }
+    }
+
+    private static Object arg(Slot slot, int i) {
+        if (slot.args != null) return slot.args[i];
+        return (i == 0) ? slot.arg0 : (i == 1) ? slot.arg1 : slot.arg2;
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"' || ch == '\\') {
+                out.append('\\').append(ch);
+            } else if (ch < 0x20) {
+                out.append(String.format("\\u%04x", (int) ch));
+            } else {
+                out.append(ch);
+            }
+        }
+        out.append('"');
+    }
+
+    private static int parseLevel(String value) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(value.trim())) return i;
+        }
+        return "OFF".equalsIgnoreCase(value.trim()) ? OFF : INFO;
+    }
+}
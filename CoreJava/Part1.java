@@ -3,6 +3,9 @@
 // It encapsulates state (account details) and exposes behavior (transaction methods).
 
 class BankAccount{
+    // Messages go through the async Log facade (Log.java) instead of System.out.println
+    private static final Log LOG = Log.get(BankAccount.class);
+
     private double currentBalance;
     private String accountHolderName;
     private boolean isActive;
@@ -16,24 +19,24 @@ class BankAccount{
         this.currentBalance = initialDepositAmount;
         this.accountHolderName = name;
         this.isActive = true;
-        System.out.println(">> Acount Created for "+name);
+        LOG.info(">> Acount Created for {}", name);
     }
 
     public void depositAmount(double amount){
         if(amount>=0){
             this.currentBalance += amount;
-            System.out.println(accountHolderName+" deposited: Rs "+amount);
+            LOG.info("{} deposited: Rs {}", accountHolderName, amount);
         } else{
-            System.out.println("Error: Deposited Amount must be positive!");
+            LOG.warn("Error: Deposited Amount must be positive!");
         }
     }
 
     public void withdrawAmount(double amount){
         if(this.currentBalance < amount && amount > 0){
-            System.out.println("Cannot withdraw insufficient funds : Current Balance Rs "+this.currentBalance);
+            LOG.warn("Cannot withdraw insufficient funds : Current Balance Rs {}", this.currentBalance);
         } else {
             this.currentBalance -= amount;
-            System.out.println(accountHolderName+" withdrawed: Rs "+amount);
+            LOG.info("{} withdrawed: Rs {}", accountHolderName, amount);
         }
     }
 
@@ -47,11 +50,11 @@ class BankAccount{
     }
 
     public void showStatus(){
-        System.out.println("--------------------------------");
-        System.out.println("Account Holder: " + accountHolderName);
-        System.out.println("Current Balance: Rs " + currentBalance);
-        System.out.println("Active Status: " + isActive);
-        System.out.println("--------------------------------");
+        LOG.info("--------------------------------");
+        LOG.info("Account Holder: {}", accountHolderName);
+        LOG.info("Current Balance: Rs {}", currentBalance);
+        LOG.info("Active Status: {}", isActive);
+        LOG.info("--------------------------------");
     }
 
 }
@@ -76,6 +79,7 @@ public class Part1 {
         account2.showStatus();
 
         // Using getter:
+        Log.flush(); // account logs are written asynchronously: let them come out first
         System.out.println("Accessed Using getter : "+account2.getAccountHolderName()+" has a balance "+account2.getBalance());
 
         // account1.currentBalance = 10000; throws a compile time error cannot access private member from outside the class
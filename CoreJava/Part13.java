@@ -0,0 +1,1044 @@
+/**
+ * Part 13: Concurrent Ledger (BankAccount at scale)
+ * Concepts Covered:
+ * 1. Fixed-point money: balances as 'long' paise instead of 'double' rupees (no rounding drift).
+ * 2. Struct-of-arrays: one primitive array for millions of accounts instead of millions of objects.
+ * 3. Lock-free updates: Compare-And-Swap (CAS) loops on AtomicLongArray.
+ * 4. Benchmarking: warmup, fixed-duration runs, 1..N threads, and a money-conservation check.
+ * 5. Atomic transfers: lock striping + ordered lock acquisition (deadlock-free), batched transfers.
+ * 6. Persistence: memory-mapped append-only journal (FileChannel/MappedByteBuffer), group commit,
+ *    snapshots, and fast replay on startup.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+class LedgerEngine {
+
+    // 1 Rupee = 100 paise. All amounts inside the engine are paise.
+    public static final long MINOR_UNITS = 100;
+
+    // Account id = index into this array. AtomicLongArray is a plain long[] underneath,
+    // but every slot can be updated atomically with CAS.
+    private final AtomicLongArray balances;
+    private final AtomicInteger nextAccountId = new AtomicInteger();
+
+    // LOCK STRIPING: account i is guarded by stripes[i & stripeMask].
+    // A few thousand locks cover millions of accounts, and two random accounts rarely share one.
+    private final ReentrantLock[] stripes;
+    private final int stripeMask;
+
+    // Every change is appended here after it is applied in memory (null = in-memory only)
+    private final LedgerJournal journal;
+
+    public LedgerEngine(int capacity) {
+        this(capacity, 1024, null);
+    }
+
+    public LedgerEngine(int capacity, int stripeCount, LedgerJournal journal) {
+        this.balances = new AtomicLongArray(capacity);
+        this.journal = journal;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount)); // power of two -> '&' instead of '%'
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.stripeMask = size - 1;
+    }
+
+    // Returns the new account's id
+    public int openAccount(long initialMinor) {
+        if (initialMinor < 0) initialMinor = 0;
+        int id = nextAccountId.getAndIncrement();
+        if (id >= balances.length()) {
+            throw new IllegalStateException("Ledger is full (" + balances.length() + " accounts)");
+        }
+        balances.set(id, initialMinor);
+        if (journal != null) journal.append(LedgerJournal.OPEN, id, -1, initialMinor);
+        return id;
+    }
+
+    public LedgerJournal getJournal() {
+        return journal;
+    }
+
+    // Used by LedgerJournal.recover() before the ledger is handed out
+    void restore(long[] restoredBalances, int accountCount) {
+        for (int i = 0; i < accountCount; i++) {
+            balances.set(i, restoredBalances[i]);
+        }
+        nextAccountId.set(accountCount);
+    }
+
+    public int getAccountCount() {
+        return Math.min(nextAccountId.get(), balances.length());
+    }
+
+    // Deposits can never fail, so one atomic add is enough. Returns the new balance.
+    public long deposit(int accountId, long amountMinor) {
+        if (amountMinor < 0) {
+            throw new IllegalArgumentException("Deposited amount must be positive");
+        }
+        long newBalance = balances.addAndGet(accountId, amountMinor);
+        if (journal != null) journal.append(LedgerJournal.DEPOSIT, accountId, -1, amountMinor);
+        return newBalance;
+    }
+
+    // ==========================================
+    // CAS LOOP
+    // Read the balance, compute the new one, and only write it if nobody changed
+    // the slot in between. If somebody did, read again and retry. No thread ever blocks,
+    // and the balance can never go below zero.
+    // ==========================================
+    public boolean withdraw(int accountId, long amountMinor) {
+        if (amountMinor < 0) {
+            throw new IllegalArgumentException("Withdrawn amount must be positive");
+        }
+        if (!tryDebit(accountId, amountMinor)) {
+            return false;
+        }
+        if (journal != null) journal.append(LedgerJournal.WITHDRAW, accountId, -1, amountMinor);
+        return true;
+    }
+
+    private boolean tryDebit(int accountId, long amountMinor) {
+        while (true) {
+            long current = balances.get(accountId);
+            if (current < amountMinor) {
+                return false; // Insufficient funds
+            }
+            if (balances.compareAndSet(accountId, current, current - amountMinor)) {
+                return true;
+            }
+        }
+    }
+
+    public long getBalance(int accountId) {
+        return balances.get(accountId);
+    }
+
+    // ==========================================
+    // TRANSFER (all-or-nothing between two accounts)
+    // Calling withdraw() then deposit() from outside is not atomic: another transfer can run
+    // in between, and an audit can see the money "in flight". Here both stripes are locked first.
+    //
+    // DEADLOCK FREEDOM: locks are always taken in ascending stripe order. A->B and B->A both lock
+    // the lower stripe first, so no two threads can each hold one lock and wait for the other.
+    //
+    // Single-account deposit()/withdraw() stay lock-free. They touch one slot, so they are atomic
+    // by themselves, and the debit below is the same CAS, so the balance still never goes negative.
+    // ==========================================
+    public boolean transfer(int fromId, int toId, long amountMinor) {
+        if (amountMinor < 0) {
+            throw new IllegalArgumentException("Transferred amount must be positive");
+        }
+        int a = fromId & stripeMask;
+        int b = toId & stripeMask;
+        ReentrantLock first = stripes[Math.min(a, b)];
+        ReentrantLock second = stripes[Math.max(a, b)];
+
+        long journalEnd;
+        first.lock();
+        if (second != first) second.lock();
+        try {
+            journalEnd = applyTransfer(fromId, toId, amountMinor);
+        } finally {
+            if (second != first) second.unlock();
+            first.unlock();
+        }
+        if (journalEnd == NOT_APPLIED) {
+            return false;
+        }
+        awaitJournal(journalEnd);
+        return true;
+    }
+
+    // ==========================================
+    // BATCHED TRANSFERS
+    // Locks every stripe the batch touches once (ascending order again), then applies all the
+    // transfers in order with no further locking. Thousands of transfers cost one round of lock
+    // operations, and under a hot-account workload each hot stripe is taken once per batch,
+    // not once per transfer.
+    // Returns how many were applied. If 'applied' is given, applied[i] tells which ones.
+    // ==========================================
+    public int transferBatch(int[] fromIds, int[] toIds, long[] amountsMinor, int count, boolean[] applied) {
+        boolean[] touched = new boolean[stripes.length];
+        for (int i = 0; i < count; i++) {
+            if (amountsMinor[i] < 0) {
+                throw new IllegalArgumentException("Transferred amount must be positive (transfer " + i + ")");
+            }
+            touched[fromIds[i] & stripeMask] = true;
+            touched[toIds[i] & stripeMask] = true;
+        }
+
+        for (int s = 0; s < stripes.length; s++) {
+            if (touched[s]) stripes[s].lock();
+        }
+        int done = 0;
+        long journalEnd = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                long end = applyTransfer(fromIds[i], toIds[i], amountsMinor[i]);
+                boolean ok = end != NOT_APPLIED;
+                if (applied != null) applied[i] = ok;
+                if (ok) {
+                    done++;
+                    journalEnd = Math.max(journalEnd, end);
+                }
+            }
+        } finally {
+            for (int s = stripes.length - 1; s >= 0; s--) {
+                if (touched[s]) stripes[s].unlock();
+            }
+        }
+        awaitJournal(journalEnd); // one wait for the whole batch
+        return done;
+    }
+
+    private static final long NOT_APPLIED = -1;
+
+    // Caller holds the stripes of both accounts. Returns NOT_APPLIED, or the journal position to
+    // wait for once the stripes are released: a SYNC flush must never be waited for under a lock.
+    private long applyTransfer(int fromId, int toId, long amountMinor) {
+        if (!tryDebit(fromId, amountMinor)) {
+            return NOT_APPLIED; // Insufficient funds: nothing changed
+        }
+        balances.addAndGet(toId, amountMinor);
+        // One record for both sides: a replay can never apply half a transfer
+        return (journal != null) ? journal.appendNoWait(LedgerJournal.TRANSFER, fromId, toId, amountMinor) : 0;
+    }
+
+    // SYNC journal: don't report success before the records are on disk (no-op otherwise)
+    private void awaitJournal(long journalEnd) {
+        if (journal != null && journalEnd > 0) journal.acknowledge(journalEnd);
+    }
+
+    // Total taken while holding every stripe, so no transfer is half-applied in it.
+    // (Lock-free deposits/withdrawals can still run; they are real money coming in or out.)
+    public long auditTotal() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+        try {
+            return totalBalance();
+        } finally {
+            for (int s = stripes.length - 1; s >= 0; s--) {
+                stripes[s].unlock();
+            }
+        }
+    }
+
+    // Sum of every balance. Only exact while no one is writing (used for audits).
+    public long totalBalance() {
+        long total = 0;
+        int count = getAccountCount();
+        for (int i = 0; i < count; i++) {
+            total += balances.get(i);
+        }
+        return total;
+    }
+
+    public static long toMinor(double rupees) {
+        return Math.round(rupees * MINOR_UNITS);
+    }
+
+    public static String format(long minor) {
+        return "Rs " + (minor / MINOR_UNITS) + "." + String.format("%02d", Math.abs(minor % MINOR_UNITS));
+    }
+}
+
+// JMH is not available in this folder (no build tool), so this is a plain main()-based harness
+// doing what JMH would: warmup rounds first, then fixed-duration measured rounds per thread count.
+class LedgerBenchmark {
+
+    private final LedgerEngine ledger;
+    private final int accounts;
+
+    LedgerBenchmark(LedgerEngine ledger, int accounts) {
+        this.ledger = ledger;
+        this.accounts = accounts;
+    }
+
+    // Random deposits/withdrawals on random accounts for 'millis'. Returns operations per second.
+    double run(int threads, long millis) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        LongAdder netFlow = new LongAdder(); // deposits - successful withdrawals, to audit the ledger
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long before = ledger.totalBalance();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long ops = 0;
+                long flow = 0;
+                ready.countDown();
+                while (running.get()) {
+                    // Batches of 256 keep the volatile 'running' read out of the measurement
+                    for (int i = 0; i < 256; i++) {
+                        int account = random.nextInt(accounts);
+                        long amount = 1 + random.nextInt(50_000);
+                        if (random.nextBoolean()) {
+                            ledger.deposit(account, amount);
+                            flow += amount;
+                        } else if (ledger.withdraw(account, amount)) {
+                            flow -= amount;
+                        }
+                    }
+                    ops += 256;
+                }
+                operations.add(ops);
+                netFlow.add(flow);
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        running.set(false);
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        // Nothing may be lost or created: final total = starting total + net flow
+        long expected = before + netFlow.sum();
+        long actual = ledger.totalBalance();
+        if (expected != actual) {
+            throw new IllegalStateException("Ledger lost money! expected " + expected + " but was " + actual);
+        }
+        return operations.sum() / seconds;
+    }
+}
+
+// ==========================================
+// APPEND-ONLY JOURNAL (write-behind journal with durable-before-ack) for LedgerEngine
+// Every successful change is one fixed-size 24-byte record:
+//   [int type][int account][int toAccount][int checksum][long amountMinor]
+// Records only ever describe changes that already happened (a withdrawal is logged only if it
+// succeeded), and balances are just sums of those changes. So replay can add them up blindly, in
+// any order, without re-checking funds. That is what makes it fast.
+//
+// Files (in one directory):
+//   journal-<n>.dat  segment n holds records [n * SEGMENT_RECORDS, (n+1) * SEGMENT_RECORDS)
+//   snapshot.dat     all balances as of some record position; older segments are deleted
+//
+// Segments are memory-mapped: an append is a few puts into the page cache, with no system call.
+// Durability is a separate step (force()), and how often it runs is configurable:
+//   OS_CACHE      never forced while running; the OS writes pages back in its own time
+//   GROUP_COMMIT  a background thread forces every 'groupCommitMillis'
+//   SYNC          append() returns only once its record is forced, and waiting appenders
+//                 share the same force(), so many records cost one disk flush (group commit).
+//                 Transfers write under their stripe locks with appendNoWait() and wait in
+//                 acknowledge() after releasing them, so a flush never blocks other transfers.
+// ==========================================
+class LedgerJournal implements AutoCloseable {
+
+    enum Durability { OS_CACHE, GROUP_COMMIT, SYNC }
+
+    static final int OPEN = 1;
+    static final int DEPOSIT = 2;
+    static final int WITHDRAW = 3;
+    static final int TRANSFER = 4;
+
+    static final int RECORD_BYTES = 24;
+    static final int SEGMENT_RECORDS = 1 << 20; // 24 MB per segment file
+
+    private static final long SNAPSHOT_MAGIC = 0x4C45444745523031L; // "LEDGER01"
+
+    private final Path dir;
+    private final Durability durability;
+    private final long groupCommitMillis;
+    private final long snapshotEveryRecords;
+
+    // Segment number -> mapping. The file channel can be closed once mapped.
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    // Appends are serialized by 'this'. 'position' is volatile and written after the record,
+    // so any thread that reads it can safely read every record below it.
+    private volatile long position;
+    private MappedByteBuffer current;
+    private long currentSegment = -1;
+
+    // Appenders wait on 'flushed'; the flusher waits on 'flushNeeded'. Two conditions, so waking
+    // the flusher never wakes the other waiters.
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Condition flushNeeded = flushLock.newCondition();
+    private final Condition flushed = flushLock.newCondition();
+    private long flushedPosition;  // guarded by flushLock
+    private boolean flushRequested; // guarded by flushLock
+    private final LongAdder flushes = new LongAdder();
+
+    // Snapshot state lives here, not in the ledger: it is rebuilt from the journal alone,
+    // so it never sees a half-finished operation and needs no locks on the ledger.
+    private final Object snapshotLock = new Object();
+    private final long[] snapshotBalances;
+    private int snapshotAccounts;
+    private volatile long snapshotPosition;
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private long replayedRecords; // how many records the last recover() had to replay
+
+    // The snapshot state starts as "everything replayed so far", i.e. up to 'position'
+    private LedgerJournal(Path dir, Durability durability, long groupCommitMillis, long snapshotEveryRecords,
+                          long[] snapshotBalances, int snapshotAccounts, long position) {
+        this.dir = dir;
+        this.durability = durability;
+        this.groupCommitMillis = groupCommitMillis;
+        this.snapshotEveryRecords = snapshotEveryRecords;
+        this.snapshotBalances = snapshotBalances;
+        this.snapshotAccounts = snapshotAccounts;
+        this.snapshotPosition = position;
+        this.position = position;
+        this.flushedPosition = position;
+
+        // Anything after the last valid record is left over from a crash, and not necessarily in one
+        // piece: the OS may have written a later page back but not an earlier one, leaving complete
+        // records behind a hole. Clear the rest of the segment and drop later segments, and force the
+        // clearing out before new records can land in front of the stale ones.
+        mapForAppend(position);
+        boolean cleared = false;
+        for (long p = position; p < (currentSegment + 1) * SEGMENT_RECORDS; p++) {
+            int offset = (int) (p % SEGMENT_RECORDS) * RECORD_BYTES;
+            if ((current.getLong(offset) | current.getLong(offset + 8) | current.getLong(offset + 16)) != 0) {
+                current.putLong(offset, 0).putLong(offset + 8, 0).putLong(offset + 16, 0);
+                cleared = true;
+            }
+        }
+        if (cleared) {
+            current.force();
+        }
+        deleteSegmentsFrom(dir, currentSegment + 1);
+
+        this.flusher = new Thread(this::flushLoop, "ledger-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // ==========================================
+    // RECOVERY: snapshot + replay of the records written after it
+    // ==========================================
+    public static LedgerEngine recover(Path dir, int capacity, Durability durability) throws IOException {
+        return recover(dir, capacity, durability, 2, 5_000_000);
+    }
+
+    public static LedgerEngine recover(Path dir, int capacity, Durability durability,
+                                       long groupCommitMillis, long snapshotEveryRecords) throws IOException {
+        Files.createDirectories(dir);
+        long[] balances = new long[capacity];
+        int accounts = 0;
+        long snapshotPosition = 0;
+
+        Path snapshotFile = dir.resolve("snapshot.dat");
+        if (Files.exists(snapshotFile)) {
+            try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+                ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (in.getLong() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Not a ledger snapshot: " + snapshotFile);
+                }
+                snapshotPosition = in.getLong();
+                accounts = in.getInt();
+                for (int i = 0; i < accounts; i++) {
+                    balances[i] = in.getLong();
+                }
+            }
+        }
+        deleteSegmentsBelow(dir, snapshotPosition);
+
+        // Plain long[] and no checks: replay is a tight loop over the mapped files
+        long position = snapshotPosition;
+        long[] accountCount = {accounts};
+        while (true) {
+            Path file = segmentFile(dir, position / SEGMENT_RECORDS);
+            if (!Files.exists(file)) break;
+            long end = replaySegment(file, position, balances, accountCount);
+            if (end == position) break;
+            position = end;
+            if (position % SEGMENT_RECORDS != 0) break; // stopped inside a segment: end of the journal
+        }
+
+        LedgerJournal journal = new LedgerJournal(dir, durability, groupCommitMillis, snapshotEveryRecords,
+                balances.clone(), (int) accountCount[0], position);
+        journal.replayedRecords = position - snapshotPosition;
+
+        LedgerEngine ledger = new LedgerEngine(capacity, 1024, journal);
+        ledger.restore(balances, (int) accountCount[0]);
+        return ledger;
+    }
+
+    // Applies records from 'from' until the segment ends or a record is empty/torn. Returns the next position.
+    private static long replaySegment(Path file, long from, long[] balances, long[] accountCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int records = (int) Math.min(SEGMENT_RECORDS, channel.size() / RECORD_BYTES);
+            long segmentStart = from - from % SEGMENT_RECORDS;
+            int i = (int) (from - segmentStart);
+            for (; i < records; i++) {
+                int offset = i * RECORD_BYTES;
+                int type = in.getInt(offset);
+                int account = in.getInt(offset + 4);
+                int toAccount = in.getInt(offset + 8);
+                long amount = in.getLong(offset + 16);
+                if (type == 0 || in.getInt(offset + 12) != checksum(type, account, toAccount, amount)) {
+                    break;
+                }
+                apply(balances, type, account, toAccount, amount);
+                if (account >= accountCount[0]) accountCount[0] = account + 1;
+            }
+            return segmentStart + i;
+        }
+    }
+
+    private static void apply(long[] balances, int type, int account, int toAccount, long amount) {
+        switch (type) {
+            case OPEN:
+            case DEPOSIT:
+                balances[account] += amount;
+                break;
+            case WITHDRAW:
+                balances[account] -= amount;
+                break;
+            case TRANSFER:
+                balances[account] -= amount;
+                balances[toAccount] += amount;
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private static int checksum(int type, int account, int toAccount, long amount) {
+        long h = type * 0x9E3779B97F4A7C15L;
+        h = (h ^ account) * 0xC2B2AE3D27D4EB4FL;
+        h = (h ^ toAccount) * 0x9E3779B97F4A7C15L;
+        h = (h ^ amount) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32)) | 1; // never 0, so a zeroed slot never looks valid
+    }
+
+    // ==========================================
+    // APPEND
+    // ==========================================
+    public void append(int type, int account, int toAccount, long amountMinor) {
+        acknowledge(appendNoWait(type, account, toAccount, amountMinor));
+    }
+
+    // Writes the record without waiting for it to be durable; returns the position just after it
+    public long appendNoWait(int type, int account, int toAccount, long amountMinor) {
+        long recordPosition;
+        synchronized (this) {
+            recordPosition = position;
+            if (recordPosition / SEGMENT_RECORDS != currentSegment) {
+                mapForAppend(recordPosition);
+            }
+            int offset = (int) (recordPosition % SEGMENT_RECORDS) * RECORD_BYTES;
+            current.putInt(offset + 4, account);
+            current.putInt(offset + 8, toAccount);
+            current.putInt(offset + 12, checksum(type, account, toAccount, amountMinor));
+            current.putLong(offset + 16, amountMinor);
+            current.putInt(offset, type); // type last: a non-zero type marks a finished record
+            position = recordPosition + 1;
+        }
+        return recordPosition + 1;
+    }
+
+    // SYNC: returns once every record below 'upToPosition' is forced. Other modes don't wait.
+    public void acknowledge(long upToPosition) {
+        if (durability == Durability.SYNC) {
+            awaitDurable(upToPosition);
+        }
+    }
+
+    private void mapForAppend(long recordPosition) {
+        long segment = recordPosition / SEGMENT_RECORDS;
+        try (FileChannel channel = FileChannel.open(segmentFile(dir, segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_RECORDS * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map journal segment " + segment, e);
+        }
+        currentSegment = segment;
+        segments.put(segment, current);
+    }
+
+    // ==========================================
+    // GROUP COMMIT
+    // Waiters set 'flushRequested' and sleep. The flusher wakes up, forces everything written
+    // so far in one go, and wakes all of them: one disk flush for the whole group.
+    // ==========================================
+    public void awaitDurable(long upToPosition) {
+        flushLock.lock();
+        try {
+            while (flushedPosition < upToPosition && running) {
+                if (!flushRequested) {
+                    flushRequested = true;
+                    flushNeeded.signal();
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            flushLock.lock();
+            try {
+                if (!flushRequested) {
+                    flushNeeded.await(Math.max(1, groupCommitMillis), TimeUnit.MILLISECONDS);
+                }
+                flushRequested = false;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                flushLock.unlock();
+            }
+            if (durability != Durability.OS_CACHE) {
+                flush();
+            }
+            if (position - snapshotPosition >= snapshotEveryRecords) {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    e.printStackTrace(); // Not fatal: replay just gets longer
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        long target = position;
+        long from;
+        flushLock.lock();
+        try {
+            from = flushedPosition;
+        } finally {
+            flushLock.unlock();
+        }
+        if (target > from) {
+            for (long segment = from / SEGMENT_RECORDS; segment <= (target - 1) / SEGMENT_RECORDS; segment++) {
+                MappedByteBuffer buffer = segments.get(segment);
+                if (buffer != null) buffer.force();
+            }
+            flushes.increment();
+        }
+        flushLock.lock();
+        try {
+            flushedPosition = Math.max(flushedPosition, target);
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // ==========================================
+    // SNAPSHOT (checkpoint)
+    // Folds the records since the last snapshot into the snapshot balances, writes them to a temp
+    // file, fsyncs it and renames it over snapshot.dat (atomic). Segments that are now fully
+    // covered are deleted, so replay time stays bounded however long the ledger runs.
+    // ==========================================
+    public long checkpoint() throws IOException {
+        synchronized (snapshotLock) {
+            long from = snapshotPosition;
+            long to = position;
+            for (long p = from; p < to; p++) {
+                MappedByteBuffer buffer = segments.get(p / SEGMENT_RECORDS);
+                int offset = (int) (p % SEGMENT_RECORDS) * RECORD_BYTES;
+                int type = buffer.getInt(offset);
+                int account = buffer.getInt(offset + 4);
+                apply(snapshotBalances, type, account, buffer.getInt(offset + 8), buffer.getLong(offset + 16));
+                if (account >= snapshotAccounts) snapshotAccounts = account + 1;
+            }
+
+            Path temp = dir.resolve("snapshot.tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer out = ByteBuffer.allocate(20 + snapshotAccounts * 8);
+                out.putLong(SNAPSHOT_MAGIC).putLong(to).putInt(snapshotAccounts);
+                for (int i = 0; i < snapshotAccounts; i++) {
+                    out.putLong(snapshotBalances[i]);
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, dir.resolve("snapshot.dat"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotPosition = to;
+
+            for (long segment : segments.keySet()) {
+                if ((segment + 1) * SEGMENT_RECORDS <= to && segment != currentSegment) {
+                    segments.remove(segment);
+                }
+            }
+            deleteSegmentsBelow(dir, to);
+            return to;
+        }
+    }
+
+    private static void deleteSegmentsBelow(Path dir, long position) {
+        for (long segment = position / SEGMENT_RECORDS - 1; segment >= 0; segment--) {
+            try {
+                if (!Files.deleteIfExists(segmentFile(dir, segment))) break;
+            } catch (IOException e) {
+                // e.g. Windows refuses to delete a file that is still mapped; retried at the next start
+                break;
+            }
+        }
+    }
+
+    private static void deleteSegmentsFrom(Path dir, long firstSegment) {
+        for (long segment = firstSegment; ; segment++) {
+            try {
+                if (!Files.deleteIfExists(segmentFile(dir, segment))) break;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot remove stale journal segment " + segment, e);
+            }
+        }
+    }
+
+    private static Path segmentFile(Path dir, long segment) {
+        return dir.resolve(String.format("journal-%06d.dat", segment));
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    @Override
+    public void close() {
+        flush(); // whatever the mode, a clean shutdown loses nothing
+        running = false;
+        flushLock.lock();
+        try {
+            flushNeeded.signal();
+            flushed.signalAll();
+        } finally {
+            flushLock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
+
+// Transfers under a skewed workload: 'hotShare' of the transfers touch one of 'hotAccounts'
+// accounts (think: a merchant everyone pays). An auditor thread checks during the run that
+// the total never changes, which only holds if every transfer is atomic.
+class TransferBenchmark {
+
+    private final LedgerEngine ledger;
+    private final int accounts;
+    private final int hotAccounts;
+    private final double hotShare;
+
+    TransferBenchmark(LedgerEngine ledger, int accounts, int hotAccounts, double hotShare) {
+        this.ledger = ledger;
+        this.accounts = accounts;
+        this.hotAccounts = hotAccounts;
+        this.hotShare = hotShare;
+    }
+
+    // batchSize 1 = transfer() per call, otherwise transferBatch(). Returns transfers per second.
+    double run(int threads, long millis, int batchSize) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder transfers = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        long expectedTotal = ledger.auditTotal();
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] from = new int[batchSize];
+                int[] to = new int[batchSize];
+                long[] amounts = new long[batchSize];
+                long count = 0;
+                ready.countDown();
+                while (running.get()) {
+                    for (int i = 0; i < batchSize; i++) {
+                        from[i] = pickAccount(random);
+                        to[i] = pickAccount(random);
+                        amounts[i] = 1 + random.nextInt(50_000);
+                    }
+                    if (batchSize == 1) {
+                        ledger.transfer(from[0], to[0], amounts[0]);
+                    } else {
+                        ledger.transferBatch(from, to, amounts, batchSize, null);
+                    }
+                    count += batchSize;
+                }
+                transfers.add(count);
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        long deadline = start + millis * 1_000_000;
+        int audits = 0;
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            long seen = ledger.auditTotal();
+            audits++;
+            if (seen != expectedTotal) {
+                running.set(false);
+                throw new IllegalStateException("Audit saw a half-applied transfer: " + seen + " != " + expectedTotal);
+            }
+        }
+        running.set(false);
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        if (ledger.auditTotal() != expectedTotal) {
+            throw new IllegalStateException("Transfers created or destroyed money");
+        }
+        return transfers.sum() / seconds;
+    }
+
+    private int pickAccount(ThreadLocalRandom random) {
+        return (random.nextDouble() < hotShare) ? random.nextInt(hotAccounts) : random.nextInt(accounts);
+    }
+}
+
+public class Part13 {
+
+    // Usage: java Part13 [accounts] [maxThreads] [secondsPerRound]
+    public static void main(String[] args) throws InterruptedException, IOException {
+        int accounts = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long millis = (args.length > 2) ? Long.parseLong(args[2]) * 1000 : 2000;
+
+        System.out.println("--- 1. Opening " + accounts + " accounts ---");
+        LedgerEngine ledger = new LedgerEngine(accounts + 2); // +2 for the demo accounts below
+        for (int i = 0; i < accounts; i++) {
+            ledger.openAccount(LedgerEngine.toMinor(1000.00));
+        }
+        System.out.println("Total money in the ledger: " + LedgerEngine.format(ledger.totalBalance()));
+
+        System.out.println("\n--- 2. Basic operations (paise, no floating point) ---");
+        int aryan = ledger.openAccount(LedgerEngine.toMinor(1000.00));
+        ledger.deposit(aryan, LedgerEngine.toMinor(300.10));
+        boolean ok = ledger.withdraw(aryan, LedgerEngine.toMinor(200.20));
+        boolean tooMuch = ledger.withdraw(aryan, LedgerEngine.toMinor(1_000_000));
+        System.out.println("Withdraw 200.20 -> " + ok + ", withdraw 10 lakh -> " + tooMuch);
+        System.out.println("Balance: " + LedgerEngine.format(ledger.getBalance(aryan)) + " (expected Rs 1099.90)");
+
+        System.out.println("\n--- 3. Throughput (random deposit/withdraw, 1.." + maxThreads + " threads) ---");
+        LedgerBenchmark benchmark = new LedgerBenchmark(ledger, accounts);
+        System.out.println("Warming up...");
+        benchmark.run(maxThreads, millis);
+
+        // 1, 2, 4, ... and always maxThreads itself
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            printRound(threads, benchmark.run(threads, millis));
+        }
+        printRound(maxThreads, benchmark.run(maxThreads, millis));
+        System.out.println(">> SUCCESS: Total money conserved in every round.");
+
+        System.out.println("\n--- 4. Atomic transfers ---");
+        int sahil = ledger.openAccount(LedgerEngine.toMinor(500.00));
+        System.out.println("Aryan -> Sahil Rs 100.00: " + ledger.transfer(aryan, sahil, LedgerEngine.toMinor(100.00)));
+        System.out.println("Sahil -> Aryan Rs 10 lakh: " + ledger.transfer(sahil, aryan, LedgerEngine.toMinor(1_000_000))
+                + " (insufficient funds, nothing moves)");
+        System.out.println("Aryan: " + LedgerEngine.format(ledger.getBalance(aryan)) + ", Sahil: " + LedgerEngine.format(ledger.getBalance(sahil)));
+
+        System.out.println("\n--- 5. Transfer throughput, skewed workload (80% touch one of 16 hot accounts) ---");
+        TransferBenchmark transfers = new TransferBenchmark(ledger, accounts, 16, 0.8);
+        System.out.println("Warming up...");
+        transfers.run(maxThreads, millis, 1);
+        transfers.run(maxThreads, millis, 1024);
+
+        for (int batchSize : new int[] {1, 1024}) {
+            System.out.println((batchSize == 1) ? "One transfer() per call:" : "transferBatch() of " + batchSize + ":");
+            for (int threads = 1; threads < maxThreads; threads *= 2) {
+                printRound(threads, transfers.run(threads, millis, batchSize));
+            }
+            printRound(maxThreads, transfers.run(maxThreads, millis, batchSize));
+        }
+        System.out.println(">> SUCCESS: Audits never saw a half-applied transfer.");
+
+        journalDemo(accounts, maxThreads);
+    }
+
+    // Usage of LedgerJournal: write, "restart", replay, snapshot, and group commit
+    private static void journalDemo(int accounts, int maxThreads) throws IOException, InterruptedException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "part13-ledger-journal");
+        deleteDirectory(dir);
+        int operations = 5_000_000;
+
+        System.out.println("\n--- 6. Journal: " + accounts + " accounts + " + operations + " operations (group commit) ---");
+        // No automatic snapshots here, so the first replay has to read the whole journal
+        LedgerEngine ledger = LedgerJournal.recover(dir, accounts, LedgerJournal.Durability.GROUP_COMMIT, 2, Long.MAX_VALUE);
+        for (int i = 0; i < accounts; i++) {
+            ledger.openAccount(LedgerEngine.toMinor(1000.00));
+        }
+        long start = System.nanoTime();
+        randomOperations(ledger, accounts, operations);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        System.out.printf("Journaled operations: %,.0f ops/s (%d disk flushes)%n", operations / seconds, ledger.getJournal().getFlushCount());
+        long fingerprint = fingerprint(ledger);
+        ledger.getJournal().close();
+
+        System.out.println("\n--- 7. Restart: replay the whole journal ---");
+        ledger = timedRecover(dir, accounts, fingerprint);
+
+        System.out.println("\n--- 8. Snapshot, 1M more operations, restart again ---");
+        ledger.getJournal().checkpoint();
+        randomOperations(ledger, accounts, 1_000_000);
+        fingerprint = fingerprint(ledger);
+        ledger.getJournal().close();
+        ledger = timedRecover(dir, accounts, fingerprint);
+        ledger.getJournal().close();
+        holeAfterCrashCheck();
+
+        System.out.println("\n--- 9. SYNC durability: each deposit waits for its flush, flushes are shared ---");
+        ledger = LedgerJournal.recover(dir, accounts, LedgerJournal.Durability.SYNC);
+        LedgerEngine syncLedger = ledger;
+        int threads = Math.max(8, maxThreads); // waiting threads are what group commit batches
+        LongAdder deposits = new LongAdder();
+        long flushesBefore = syncLedger.getJournal().getFlushCount();
+        Thread[] workers = new Thread[threads];
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    syncLedger.deposit(random.nextInt(accounts), 100);
+                    deposits.increment();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long flushes = syncLedger.getJournal().getFlushCount() - flushesBefore;
+        System.out.printf("%d threads: %,d durable deposits in 1 s with %,d flushes (%.1f records per flush)%n",
+                threads, deposits.sum(), flushes, deposits.sum() / (double) Math.max(1, flushes));
+        syncLedger.getJournal().close();
+        deleteDirectory(dir);
+    }
+
+    // Records 0..3 on disk, then a crash loses record 2 but keeps record 3. Recovery stops at 2; the
+    // next run writes a new record 2, and a second recovery must not pick the stale record 3 up again.
+    private static void holeAfterCrashCheck() throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), "part13-ledger-hole");
+        deleteDirectory(dir);
+        LedgerEngine ledger = LedgerJournal.recover(dir, 1, LedgerJournal.Durability.OS_CACHE);
+        ledger.openAccount(0);                         // record 0
+        for (long amount = 1; amount <= 3; amount++) { // records 1, 2, 3
+            ledger.deposit(0, amount);
+        }
+        ledger.getJournal().close();
+
+        try (FileChannel channel = FileChannel.open(dir.resolve("journal-000000.dat"),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(LedgerJournal.RECORD_BYTES), 2L * LedgerJournal.RECORD_BYTES);
+        }
+
+        ledger = LedgerJournal.recover(dir, 1, LedgerJournal.Durability.OS_CACHE);
+        long afterFirstCrash = ledger.getBalance(0);  // 0 + 1: replay stops at the hole
+        ledger.deposit(0, 100);                         // lands in slot 2
+        ledger.getJournal().close();
+        ledger = LedgerJournal.recover(dir, 1, LedgerJournal.Durability.OS_CACHE);
+        long afterSecondStart = ledger.getBalance(0);
+        ledger.getJournal().close();
+        deleteDirectory(dir);
+
+        if (afterFirstCrash != 1 || afterSecondStart != 101) {
+            throw new IllegalStateException("Stale records survived a crash: " + afterFirstCrash + ", then " + afterSecondStart);
+        }
+        System.out.println(">> SUCCESS: Records stranded behind a hole are cleared, not replayed on a later start.");
+    }
+
+    private static LedgerEngine timedRecover(Path dir, int accounts, long expectedFingerprint) throws IOException {
+        long start = System.nanoTime();
+        LedgerEngine ledger = LedgerJournal.recover(dir, accounts, LedgerJournal.Durability.GROUP_COMMIT, 2, Long.MAX_VALUE);
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        long records = ledger.getJournal().getReplayedRecords();
+        System.out.printf("Recovered in %.0f ms: snapshot + %,d replayed records (%,.0f records/s overall)%n",
+                seconds * 1000, records, records / seconds);
+        if (fingerprint(ledger) != expectedFingerprint) {
+            throw new IllegalStateException("Replay produced different balances!");
+        }
+        System.out.println(">> SUCCESS: Every balance matches the state before the restart.");
+        return ledger;
+    }
+
+    private static void randomOperations(LedgerEngine ledger, int accounts, int operations) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < operations; i++) {
+            int account = random.nextInt(accounts);
+            long amount = 1 + random.nextInt(50_000);
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                ledger.deposit(account, amount);
+            } else if (kind == 1) {
+                ledger.withdraw(account, amount);
+            } else {
+                ledger.transfer(account, random.nextInt(accounts), amount);
+            }
+        }
+    }
+
+    // Order-sensitive checksum over every balance
+    private static long fingerprint(LedgerEngine ledger) {
+        long hash = ledger.getAccountCount();
+        for (int i = 0; i < ledger.getAccountCount(); i++) {
+            hash = hash * 31 + ledger.getBalance(i);
+        }
+        return hash;
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static void printRound(int threads, double opsPerSecond) {
+        System.out.printf("%2d thread(s): %,14.0f ops/s  (%,.0f per thread)%n", threads, opsPerSecond, opsPerSecond / threads);
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Part 14: Logging Performance (System.out.println vs the Log facade)
+ * Concepts Covered:
+ * 1. Why println is slow in hot paths: string concatenation on every call, the PrintStream lock,
+ *    and (for System.out) a flush - a system call - after every line.
+ * 2. Asynchronous logging: producers only fill a ring buffer slot; a writer thread formats and
+ *    writes in batches (see Log.java).
+ * 3. Level checks: a disabled level skips all the work.
+ * 4. Measuring end-to-end: the async timings include Log.flush(), i.e. every line really written.
+ * 5. Robustness: an argument whose toString() throws costs one placeholder line, not the writer thread.
+ *
+ * Compile and run together with the classes it measures:
+ *   javac Part1.java Part5.java Part14.java
+ *   java Part14 [operationsPerThread] [maxThreads]
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+
+// The Part 1 account as it was before Log: println + concatenation on every operation.
+// Kept here only as the benchmark baseline.
+class PrintlnBankAccount {
+    private double currentBalance;
+    private String accountHolderName;
+
+    public PrintlnBankAccount(String name, double initialDepositAmount) {
+        this.currentBalance = initialDepositAmount;
+        this.accountHolderName = name;
+    }
+
+    public void depositAmount(double amount) {
+        if (amount >= 0) {
+            this.currentBalance += amount;
+            System.out.println(accountHolderName + " deposited: Rs " + amount);
+        } else {
+            System.out.println("Error: Deposited Amount must be positive!");
+        }
+    }
+
+    public void withdrawAmount(double amount) {
+        if (this.currentBalance < amount && amount > 0) {
+            System.out.println("Cannot withdraw insufficient funds : Current Balance Rs " + this.currentBalance);
+        } else {
+            this.currentBalance -= amount;
+            System.out.println(accountHolderName + " withdrawed: Rs " + amount);
+        }
+    }
+}
+
+// The Part 5 credit card payment as it was before Log (3 lines per payment)
+class PrintlnCreditCard {
+    private String transactionId;
+    private double balance;
+
+    public PrintlnCreditCard(String id, double limit) {
+        this.transactionId = id;
+        this.balance = limit;
+    }
+
+    void processPayment(double amount) {
+        System.out.println("Connecting to VISA Gateway...");
+        if (balance >= amount) {
+            balance -= amount;
+            System.out.println("Success: Paid $" + amount + " via Credit Card.");
+        }
+        System.out.println("Transaction ID: " + transactionId + " | Encrypted: SHA-256");
+    }
+}
+
+public class Part14 {
+
+    private interface Workload {
+        void run(int thread, int operations);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int operations = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+
+        PrintStream console = System.out;
+        File logFile = File.createTempFile("part14-", ".log");
+        logFile.deleteOnExit();
+        // Same setup as the JVM's own System.out: 128-byte buffer, flush on every println
+        PrintStream fileOut = new PrintStream(new BufferedOutputStream(new FileOutputStream(logFile), 128), true);
+
+        Workload bankPrintln = (thread, ops) -> {
+            PrintlnBankAccount account = new PrintlnBankAccount("Holder " + thread, 1_000_000);
+            for (int i = 0; i < ops; i++) {
+                account.depositAmount(300);
+                account.withdrawAmount(200);
+            }
+        };
+        Workload bankLog = (thread, ops) -> {
+            BankAccount account = new BankAccount("Holder " + thread, 1_000_000);
+            for (int i = 0; i < ops; i++) {
+                account.depositAmount(300);
+                account.withdrawAmount(200);
+            }
+        };
+        Workload cardPrintln = (thread, ops) -> {
+            PrintlnCreditCard card = new PrintlnCreditCard("TXN_" + thread, 1e12);
+            for (int i = 0; i < ops; i++) {
+                card.processPayment(100);
+            }
+        };
+        Workload cardLog = (thread, ops) -> {
+            PaymentChannel card = new CreditCard("TXN_" + thread, 1e12);
+            for (int i = 0; i < ops; i++) {
+                card.processPayment(100);
+                card.printReceipt();
+            }
+        };
+
+        System.setOut(fileOut);
+        Log.setOutput(fileOut);
+        StringBuilder report = new StringBuilder();
+        try {
+            // Warmup: let the JIT compile all four loops before anything is measured
+            for (Workload w : new Workload[] {bankPrintln, bankLog, cardPrintln, cardLog}) {
+                measure(w, 1, operations / 4);
+            }
+
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                report.append(String.format("%n%d thread(s), %,d operations each:%n", threads, operations));
+                addRow(report, "Part 1 account   println", measure(bankPrintln, threads, operations), threads, operations);
+                addRow(report, "Part 1 account   Log (INFO, async)", measure(bankLog, threads, operations), threads, operations);
+                Log.setLevel(Log.WARN);
+                addRow(report, "Part 1 account   Log (disabled)", measure(bankLog, threads, operations), threads, operations);
+                Log.setLevel(Log.INFO);
+                addRow(report, "Part 5 card      println", measure(cardPrintln, threads, operations), threads, operations);
+                addRow(report, "Part 5 card      Log (INFO, async)", measure(cardLog, threads, operations), threads, operations);
+                Log.setLevel(Log.WARN);
+                addRow(report, "Part 5 card      Log (disabled)", measure(cardLog, threads, operations), threads, operations);
+                Log.setLevel(Log.INFO);
+            }
+        } finally {
+            System.setOut(console);
+            Log.setOutput(console);
+            fileOut.close();
+        }
+
+        System.out.println("--- Logging cost in the Part 1 / Part 5 transaction loops (output to a file) ---");
+        System.out.println(report);
+        System.out.println("Messages dropped by Log: " + Log.getDroppedCount() + " (producers wait when the buffer is full)");
+
+        checkBrokenArgument();
+    }
+
+    // Formatting runs on the writer thread, so a throwing toString() must not take the writer down
+    private static void checkBrokenArgument() {
+        System.out.println("\n--- A log argument whose toString() throws ---");
+        Object broken = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("toString failed");
+            }
+        };
+        Log log = Log.get(Part14.class);
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        PrintStream console = System.out;
+        Log.setOutput(new PrintStream(captured, true));
+        try {
+            log.info("Broken argument: {}", broken);
+            log.info("Logged after the broken one");
+            Log.flush();
+        } finally {
+            Log.setOutput(console);
+        }
+
+        String written = captured.toString();
+        System.out.print(written);
+        if (!written.contains("<unformattable log message: java.lang.IllegalStateException>")
+                || !written.contains("Logged after the broken one")) {
+            throw new IllegalStateException("Log writer did not survive a throwing toString()");
+        }
+        System.out.println(">> SUCCESS: The bad message became a placeholder and logging carried on.");
+    }
+
+    // Runs the workload on 'threads' threads and returns the elapsed nanoseconds, including
+    // Log.flush() so async messages are counted only once they are actually written
+    private static long measure(Workload workload, int threads, int operations) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            workers[t] = new Thread(() -> workload.run(id, operations));
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Log.flush();
+        return System.nanoTime() - start;
+    }
+
+    private static void addRow(StringBuilder report, String label, long nanos, int threads, int operations) {
+        double opsPerSecond = (double) threads * operations / (nanos / 1_000_000_000.0);
+        report.append(String.format("  %-34s %,12.0f loop iterations/s  (%,6d ms)%n", label, opsPerSecond, nanos / 1_000_000));
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Part 15: Columnar Payroll (EmployeeData at scale)
+ * Concepts Covered:
+ * 1. Object-per-employee vs columns: one primitive array per field ("struct of arrays").
+ * 2. Sentinels instead of null: a byte rating of -1 replaces the boxed 'Integer' null.
+ * 3. BitSet: one bit per employee for a boolean flag instead of a whole field per object.
+ * 4. Branch-free, vectorizable loops: simple indexed loops the JIT can unroll and turn into SIMD.
+ * 5. Parallel passes: splitting the columns into chunks for a parallel stream.
+ * 6. Benchmarking: warmup, best-of-N rounds, heap used per employee, and a result check.
+ *
+ * Compile and run together with Part 2 (the EmployeeData baseline):
+ *   javac Part2.java Part15.java
+ *   java Part15 [employees] [rounds]
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+class PayrollColumns {
+
+    // Same rules as EmployeeData.annualPackage(), in paise (1 Rupee = 100 paise) so the
+    // whole pass is integer arithmetic with no rounding drift
+    public static final long MINOR_UNITS = 100;
+    public static final long BASE_BONUS = 1000 * MINOR_UNITS;
+    public static final long HIGH_RATING_BONUS = 500 * MINOR_UNITS;
+    public static final int HIGH_RATING_ABOVE = 4;
+
+    // "No rating yet" - what a null Integer means in EmployeeData (treated as 0 there, so no bonus)
+    public static final byte NO_RATING = -1;
+
+    // Chunk size for the parallel passes: big enough that splitting costs nothing,
+    // small enough that every core gets several chunks
+    private static final int CHUNK = 1 << 16;
+
+    // Employee i = index i in every column
+    private int[] ids;
+    private String[] names;
+    private long[] monthlySalaries;
+    private byte[] ratings;
+    private final BitSet permanent = new BitSet();
+    private int size;
+
+    public PayrollColumns(int capacity) {
+        capacity = Math.max(16, capacity);
+        this.ids = new int[capacity];
+        this.names = new String[capacity];
+        this.monthlySalaries = new long[capacity];
+        this.ratings = new byte[capacity];
+    }
+
+    // Converts the object model, e.g. employees loaded through EmployeeData
+    public static PayrollColumns from(List<EmployeeData> employees) {
+        PayrollColumns columns = new PayrollColumns(employees.size());
+        for (EmployeeData e : employees) {
+            int rating = (e.performanceRating != null) ? e.performanceRating : NO_RATING;
+            columns.add(e.employeeId, e.employeeName, toMinor(e.monthlySalary), e.isPermanent, rating);
+        }
+        return columns;
+    }
+
+    // Returns the row index. rating: 0..127, or NO_RATING
+    public int add(int id, String name, long monthlySalary, boolean isPermanent, int rating) {
+        if (rating < NO_RATING || rating > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Rating out of range: " + rating);
+        }
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            monthlySalaries = Arrays.copyOf(monthlySalaries, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+        }
+        int row = size++;
+        ids[row] = id;
+        names[row] = name;
+        monthlySalaries[row] = monthlySalary;
+        ratings[row] = (byte) rating;
+        permanent.set(row, isPermanent);
+        return row;
+    }
+
+    // Annual package of every employee into out[0..size). One pass, no objects, no branches.
+    public void computeAnnualPackages(long[] out) {
+        checkOutput(out);
+        computeRange(out, 0, size);
+    }
+
+    // Same result, chunks spread over the common ForkJoinPool
+    public void computeAnnualPackagesParallel(long[] out) {
+        checkOutput(out);
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        IntStream.range(0, chunks).parallel()
+                .forEach(c -> computeRange(out, c * CHUNK, Math.min(size, (c + 1) * CHUNK)));
+    }
+
+    // Total payroll without materializing the per-employee packages
+    public long totalAnnualPayroll() {
+        return sumRange(0, size);
+    }
+
+    public long totalAnnualPayrollParallel() {
+        int chunks = (size + CHUNK - 1) / CHUNK;
+        return IntStream.range(0, chunks).parallel()
+                .mapToLong(c -> sumRange(c * CHUNK, Math.min(size, (c + 1) * CHUNK)))
+                .sum();
+    }
+
+    // Sum over permanent employees only: walks the set bits instead of testing every row
+    public long permanentPayroll(long[] packages) {
+        long total = 0;
+        for (int i = permanent.nextSetBit(0); i >= 0 && i < size; i = permanent.nextSetBit(i + 1)) {
+            total += packages[i];
+        }
+        return total;
+    }
+
+    // (HIGH_RATING_ABOVE - rating) is negative exactly when rating > 4, so its sign bit is the
+    // 0/1 bonus flag. NO_RATING (-1) gives a positive number: no bonus, same as null -> 0.
+    private void computeRange(long[] out, int from, int to) {
+        long[] salaries = monthlySalaries;
+        byte[] r = ratings;
+        for (int i = from; i < to; i++) {
+            out[i] = salaries[i] * 12 + BASE_BONUS + ((HIGH_RATING_ABOVE - r[i]) >>> 31) * HIGH_RATING_BONUS;
+        }
+    }
+
+    private long sumRange(int from, int to) {
+        long[] salaries = monthlySalaries;
+        byte[] r = ratings;
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            total += salaries[i] * 12 + BASE_BONUS + ((HIGH_RATING_ABOVE - r[i]) >>> 31) * HIGH_RATING_BONUS;
+        }
+        return total;
+    }
+
+    private void checkOutput(long[] out) {
+        if (out.length < size) {
+            throw new IllegalArgumentException("Output array too small: " + out.length + " < " + size);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getName(int row) {
+        return names[row];
+    }
+
+    public long getMonthlySalary(int row) {
+        return monthlySalaries[row];
+    }
+
+    // NO_RATING if the employee has not been rated
+    public int getRating(int row) {
+        return ratings[row];
+    }
+
+    public boolean isPermanent(int row) {
+        return permanent.get(row);
+    }
+
+    public int permanentCount() {
+        return permanent.cardinality();
+    }
+
+    public static long toMinor(double rupees) {
+        return Math.round(rupees * MINOR_UNITS);
+    }
+
+    public static String format(long paise) {
+        return String.format("Rs %,d.%02d", paise / MINOR_UNITS, Math.abs(paise % MINOR_UNITS));
+    }
+}
+
+public class Part15 {
+
+    private interface Pass {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        int employees = (args.length > 0) ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        System.out.println("--- 1. Same employees, both models ---");
+        List<EmployeeData> team = new ArrayList<>();
+        EmployeeData emp1 = new EmployeeData(101, "Harsh Kasliwal", 5000.50, true);
+        emp1.performanceRating = 5;
+        team.add(emp1);
+        team.add(new EmployeeData(102, "Aditya Nair")); // no rating (null)
+        PayrollColumns small = PayrollColumns.from(team);
+        long[] smallPackages = new long[small.size()];
+        small.computeAnnualPackages(smallPackages);
+        for (int i = 0; i < small.size(); i++) {
+            System.out.println(small.getName(i) + ": object model Rs " + team.get(i).annualPackage()
+                    + " | columns " + PayrollColumns.format(smallPackages[i])
+                    + " | rating " + (small.getRating(i) == PayrollColumns.NO_RATING ? "none" : small.getRating(i)));
+        }
+
+        System.out.println("\n--- 2. Building " + String.format("%,d", employees) + " employees ---");
+        // Names are shared by both models and created first, so the heap numbers below
+        // compare only what each model adds on top of them
+        String[] names = new String[employees];
+        for (int i = 0; i < employees; i++) {
+            names[i] = "Employee " + i;
+        }
+
+        long before = usedHeap();
+        List<EmployeeData> objects = buildObjects(names);
+        long objectBytes = usedHeap() - before;
+
+        before = usedHeap();
+        PayrollColumns columns = buildColumns(names);
+        long columnBytes = usedHeap() - before;
+
+        System.out.printf("Object model: %,6.1f bytes/employee (ArrayList + EmployeeData + Integer)%n",
+                (double) objectBytes / employees);
+        System.out.printf("Columns:      %,6.1f bytes/employee (int + long + byte + 1 bit + name ref)%n",
+                (double) columnBytes / employees);
+
+        System.out.println("\n--- 3. Results match ---");
+        long[] packages = new long[employees];
+        long[] parallelPackages = new long[employees];
+        columns.computeAnnualPackages(packages);
+        columns.computeAnnualPackagesParallel(parallelPackages);
+        for (int i = 0; i < employees; i++) {
+            long expected = PayrollColumns.toMinor(objects.get(i).annualPackage());
+            if (packages[i] != expected || parallelPackages[i] != expected) {
+                throw new IllegalStateException("Mismatch at employee " + i + ": " + expected
+                        + " vs " + packages[i] + " / " + parallelPackages[i]);
+            }
+        }
+        System.out.println("Total payroll: " + PayrollColumns.format(columns.totalAnnualPayroll())
+                + " (permanent staff " + String.format("%,d", columns.permanentCount()) + ": "
+                + PayrollColumns.format(columns.permanentPayroll(packages)) + ")");
+        System.out.println(">> SUCCESS: every package identical in all models.");
+
+        System.out.println("\n--- 4. Throughput (" + Runtime.getRuntime().availableProcessors()
+                + " cores, best of " + rounds + " rounds) ---");
+        Pass objectLoop = () -> {
+            double total = 0;
+            for (EmployeeData e : objects) {
+                total += e.annualPackage();
+            }
+            return (long) total;
+        };
+        Pass columnLoop = () -> {
+            columns.computeAnnualPackages(packages);
+            return packages[employees - 1];
+        };
+        Pass columnParallel = () -> {
+            columns.computeAnnualPackagesParallel(packages);
+            return packages[employees - 1];
+        };
+        Pass columnSum = columns::totalAnnualPayroll;
+        Pass columnSumParallel = columns::totalAnnualPayrollParallel;
+
+        report("Object model    (sum of annualPackage())", objectLoop, rounds, employees);
+        report("Columns         (all packages -> long[])", columnLoop, rounds, employees);
+        report("Columns ||      (all packages -> long[])", columnParallel, rounds, employees);
+        report("Columns         (total payroll only)", columnSum, rounds, employees);
+        report("Columns ||      (total payroll only)", columnSumParallel, rounds, employees);
+    }
+
+    // Seeded, so both models get exactly the same employees
+    private static List<EmployeeData> buildObjects(String[] names) {
+        Random random = new Random(42);
+        List<EmployeeData> list = new ArrayList<>(names.length);
+        for (int i = 0; i < names.length; i++) {
+            EmployeeData e = new EmployeeData(i, names[i], randomSalary(random) / 100.0, random.nextBoolean());
+            int rating = random.nextInt(6); // 0 = not rated yet
+            e.performanceRating = (rating == 0) ? null : rating;
+            list.add(e);
+        }
+        return list;
+    }
+
+    private static PayrollColumns buildColumns(String[] names) {
+        Random random = new Random(42);
+        PayrollColumns columns = new PayrollColumns(names.length);
+        for (int i = 0; i < names.length; i++) {
+            long salary = randomSalary(random);
+            boolean isPermanent = random.nextBoolean();
+            int rating = random.nextInt(6);
+            columns.add(i, names[i], salary, isPermanent, (rating == 0) ? PayrollColumns.NO_RATING : rating);
+        }
+        return columns;
+    }
+
+    // Rs 20,000.00 .. Rs 2,00,000.00 per month, in paise
+    private static long randomSalary(Random random) {
+        return 2_000_000 + (long) (random.nextDouble() * 18_000_000);
+    }
+
+    private static void report(String label, Pass pass, int rounds, int employees) {
+        long sink = 0;
+        for (int i = 0; i < 5; i++) { // warmup: let the JIT compile the loop first
+            sink += pass.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += pass.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double perSecond = employees / (best / 1_000_000_000.0);
+        // Printing the sink keeps the JIT from removing a loop whose result is never used
+        System.out.printf("  %-42s %,8.2f ms  %,14.0f employees/s  (check %d)%n",
+                label, best / 1_000_000.0, perSecond, sink & 0xff);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,291 @@
+/**
+ * Part 16: Primitive Collections (no Integer boxing)
+ * Concepts Covered:
+ * 1. The cost of boxing: every id in a List<Integer> / Map<Integer, ...> above 127 is its own
+ *    Integer object (Part 2 showed the cache boundary: 200 == 200 is false for Integers).
+ * 2. IntArrayList, IntIntHashMap, IntObjectMap: the same jobs on plain int[] arrays (see their files).
+ * 3. Open addressing vs chained buckets: flat arrays instead of one node object per entry.
+ * 4. Benchmarking: heap used per entry, put/get throughput, best of N rounds after a warmup.
+ *
+ * Compile and run together with Part 2 (EmployeeData is used as the map value):
+ *   javac Part2.java Part16.java
+ *   java Part16 [entries] [rounds]
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class Part16 {
+
+    private interface Pass {
+        long run();
+    }
+
+    public static void main(String[] args) {
+        int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        // ==========================================
+        // 1. EmployeeData-style code with primitive collections
+        // ==========================================
+        System.out.println("--- 1. Employees by id, ratings by id, ids in a list ---");
+        IntObjectMap<EmployeeData> byId = new IntObjectMap<>();
+        IntIntHashMap ratings = new IntIntHashMap(16, -1); // -1 = not rated
+        IntArrayList permanentIds = new IntArrayList();
+
+        EmployeeData emp1 = new EmployeeData(1001, "Harsh Kasliwal", 5000.50, true);
+        EmployeeData emp2 = new EmployeeData(1002, "Aditya Nair");
+        for (EmployeeData e : new EmployeeData[] {emp1, emp2}) {
+            byId.put(e.employeeId, e);
+            if (e.isPermanent) {
+                permanentIds.add(e.employeeId);
+            }
+        }
+        ratings.put(1001, 5);
+
+        System.out.println("Employee 1002: " + byId.get(1002).employeeName);
+        System.out.println("Rating of 1001: " + ratings.get(1001) + " | rating of 1002: " + ratings.get(1002) + " (not rated)");
+        System.out.println("Permanent ids: " + permanentIds);
+
+        // Counting without boxing: rating -> number of employees
+        IntIntHashMap histogram = new IntIntHashMap();
+        int[] someRatings = {5, 3, 5, 4, 3, 5, 1};
+        for (int r : someRatings) {
+            histogram.addTo(r, 1);
+        }
+        System.out.print("Rating histogram:");
+        histogram.forEach((rating, count) -> System.out.print(" " + rating + "x" + count));
+        System.out.println();
+
+        // ==========================================
+        // 2. Same answers as the java.util collections
+        // ==========================================
+        System.out.println("\n--- 2. Random put/get/remove against HashMap ---");
+        checkAgainstHashMap(200_000);
+        System.out.println(">> SUCCESS: IntIntHashMap and IntObjectMap agree with HashMap.");
+
+        // ==========================================
+        // 3. Memory per entry
+        // ==========================================
+        System.out.println("\n--- 3. Heap per entry (" + String.format("%,d", entries) + " entries) ---");
+        int[] keys = randomIds(entries, 1);
+        EmployeeData[] values = new EmployeeData[entries]; // shared by both object maps, not counted
+        for (int i = 0; i < entries; i++) {
+            values[i] = new EmployeeData(keys[i], null);
+        }
+
+        long before = usedHeap();
+        List<Integer> boxedList = new ArrayList<>();
+        for (int key : keys) {
+            boxedList.add(key);
+        }
+        printMemory("ArrayList<Integer>", usedHeap() - before, entries);
+
+        before = usedHeap();
+        IntArrayList intList = new IntArrayList();
+        for (int key : keys) {
+            intList.add(key);
+        }
+        printMemory("IntArrayList", usedHeap() - before, entries);
+
+        before = usedHeap();
+        Map<Integer, Integer> boxedMap = new HashMap<>();
+        for (int key : keys) {
+            boxedMap.put(key, key & 7);
+        }
+        printMemory("HashMap<Integer, Integer>", usedHeap() - before, entries);
+
+        before = usedHeap();
+        IntIntHashMap intMap = new IntIntHashMap();
+        for (int key : keys) {
+            intMap.put(key, key & 7);
+        }
+        printMemory("IntIntHashMap", usedHeap() - before, entries);
+
+        before = usedHeap();
+        Map<Integer, EmployeeData> boxedObjectMap = new HashMap<>();
+        for (int i = 0; i < entries; i++) {
+            boxedObjectMap.put(keys[i], values[i]);
+        }
+        printMemory("HashMap<Integer, EmployeeData>", usedHeap() - before, entries);
+
+        before = usedHeap();
+        IntObjectMap<EmployeeData> intObjectMap = new IntObjectMap<>();
+        for (int i = 0; i < entries; i++) {
+            intObjectMap.put(keys[i], values[i]);
+        }
+        printMemory("IntObjectMap<EmployeeData>", usedHeap() - before, entries);
+        System.out.println("(Both hash maps resize at their defaults: HashMap at 75% full, the int maps at 50%.)");
+
+        // ==========================================
+        // 4. Throughput
+        // ==========================================
+        System.out.println("\n--- 4. Throughput (best of " + rounds + " rounds) ---");
+        int[] lookups = shuffledCopy(keys, 2); // hits, in a different order than inserted
+
+        report("ArrayList<Integer>  add", () -> {
+            List<Integer> list = new ArrayList<>();
+            for (int key : keys) {
+                list.add(key);
+            }
+            return list.size();
+        }, rounds, entries);
+        report("IntArrayList        add", () -> {
+            IntArrayList list = new IntArrayList();
+            for (int key : keys) {
+                list.add(key);
+            }
+            return list.size();
+        }, rounds, entries);
+        report("ArrayList<Integer>  get + sum", () -> {
+            long sum = 0;
+            for (int i = 0; i < entries; i++) {
+                sum += boxedList.get(i);
+            }
+            return sum;
+        }, rounds, entries);
+        report("IntArrayList        get + sum", () -> {
+            long sum = 0;
+            for (int i = 0; i < entries; i++) {
+                sum += intList.get(i);
+            }
+            return sum;
+        }, rounds, entries);
+
+        report("HashMap<Integer,Integer> put", () -> {
+            Map<Integer, Integer> map = new HashMap<>();
+            for (int key : keys) {
+                map.put(key, key & 7);
+            }
+            return map.size();
+        }, rounds, entries);
+        report("IntIntHashMap            put", () -> {
+            IntIntHashMap map = new IntIntHashMap();
+            for (int key : keys) {
+                map.put(key, key & 7);
+            }
+            return map.size();
+        }, rounds, entries);
+        report("HashMap<Integer,Integer> get", () -> {
+            long sum = 0;
+            for (int key : lookups) {
+                sum += boxedMap.get(key);
+            }
+            return sum;
+        }, rounds, entries);
+        report("IntIntHashMap            get", () -> {
+            long sum = 0;
+            for (int key : lookups) {
+                sum += intMap.get(key);
+            }
+            return sum;
+        }, rounds, entries);
+        report("HashMap<Integer,Employee> get", () -> {
+            long sum = 0;
+            for (int key : lookups) {
+                sum += boxedObjectMap.get(key).employeeId;
+            }
+            return sum;
+        }, rounds, entries);
+        report("IntObjectMap<Employee>    get", () -> {
+            long sum = 0;
+            for (int key : lookups) {
+                sum += intObjectMap.get(key).employeeId;
+            }
+            return sum;
+        }, rounds, entries);
+    }
+
+    // Random operations on both implementations; any difference is a bug
+    private static void checkAgainstHashMap(int operations) {
+        Random random = new Random(7);
+        IntIntHashMap ints = new IntIntHashMap();
+        IntObjectMap<String> objects = new IntObjectMap<>();
+        Map<Integer, Integer> expectedInts = new HashMap<>();
+        Map<Integer, String> expectedObjects = new HashMap<>();
+
+        for (int i = 0; i < operations; i++) {
+            int key = random.nextInt(5_000) - 100; // small range: many collisions, overwrites, removes and key 0
+            int op = random.nextInt(3);
+            if (op == 0) {
+                int value = random.nextInt(1000) + 1;
+                Integer old = expectedInts.put(key, value);
+                require(ints.put(key, value) == (old == null ? 0 : old), "put", key);
+                require(same(objects.put(key, "v" + value), expectedObjects.put(key, "v" + value)), "put object", key);
+            } else if (op == 1) {
+                Integer old = expectedInts.remove(key);
+                require(ints.remove(key) == (old == null ? 0 : old), "remove", key);
+                require(same(objects.remove(key), expectedObjects.remove(key)), "remove object", key);
+            } else {
+                require(ints.containsKey(key) == expectedInts.containsKey(key), "containsKey", key);
+                require(same(objects.get(key), expectedObjects.get(key)), "get object", key);
+            }
+        }
+        require(ints.size() == expectedInts.size() && objects.size() == expectedObjects.size(), "size", -1);
+        for (Map.Entry<Integer, Integer> e : expectedInts.entrySet()) {
+            require(ints.get(e.getKey()) == e.getValue(), "final get", e.getKey());
+        }
+    }
+
+    private static boolean same(String a, String b) {
+        return (a == null) ? b == null : a.equals(b);
+    }
+
+    private static void require(boolean condition, String operation, int key) {
+        if (!condition) {
+            throw new IllegalStateException("Mismatch in " + operation + " for key " + key);
+        }
+    }
+
+    // Distinct ids, all above the Integer cache (so boxing really allocates), in random order
+    private static int[] randomIds(int count, long seed) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = 1_000 + i * 3;
+        }
+        return shuffledCopy(ids, seed);
+    }
+
+    private static int[] shuffledCopy(int[] source, long seed) {
+        int[] copy = source.clone();
+        Random random = new Random(seed);
+        for (int i = copy.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = copy[i];
+            copy[i] = copy[j];
+            copy[j] = tmp;
+        }
+        return copy;
+    }
+
+    private static void printMemory(String label, long bytes, int entries) {
+        System.out.printf("  %-32s %,6.1f bytes/entry%n", label, (double) bytes / entries);
+    }
+
+    private static void report(String label, Pass pass, int rounds, int entries) {
+        long sink = 0;
+        for (int i = 0; i < 3; i++) { // warmup: let the JIT compile the loop first
+            sink += pass.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += pass.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Printing the sink keeps the JIT from removing a loop whose result is never used
+        System.out.printf("  %-32s %6.1f ns/op  %,14.0f ops/s  (check %d)%n",
+                label, (double) best / entries, entries / (best / 1_000_000_000.0), sink & 0xff);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,622 @@
+/**
+ * Part 17: Streaming Exam Results (Part 3 rules for millions of candidates)
+ * Concepts Covered:
+ * 1. Streaming: files are read through a small fixed buffer, never loaded whole, so memory stays
+ *    constant however many candidates there are.
+ * 2. Parsing bytes directly: CSV digits are turned into ints without creating a String per line.
+ * 3. Fork/Join: a RecursiveTask splits the file into byte ranges, workers parse them in parallel,
+ *    and the partial results are merged on the way back up.
+ * 4. Record boundaries: a CSV line belongs to the range its first byte is in; binary records
+ *    have a fixed size, so ranges are cut on record boundaries.
+ * 5. Benchmarking: throughput in MB/s and candidates/s for 1..N worker threads.
+ *
+ * Same rules as Part 3 for every candidate's marks:
+ *   -1          absent, skipped
+ *   > 100       invalid data, the rest of that candidate's marks are ignored (Part 3's 'break').
+ *               Negative marks other than -1 and unreadable fields are treated the same way.
+ *   average     total / subjects counted (integer division), graded like the 'average / 10' switch
+ *               through GradeTable's lookup table (GradeTable.java must sit next to this file)
+ *
+ * File formats:
+ *   CSV:    candidateId,mark1,mark2,...   one candidate per line (lines that don't start with a
+ *           number, e.g. a header, are counted as malformed and skipped)
+ *   Binary: int magic "MRK1", int subjects, then per candidate: int id + one short per subject
+ *
+ * Usage:
+ *   java Part17 [candidates] [maxThreads]
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Totals for a range of candidates; partial results from the workers are merged into one
+class MarkSheetStats {
+
+    long candidates;
+    long graded;           // at least one valid mark
+    long noValidMarks;
+    long marksCounted;
+    long absentMarks;
+    long invalidSheets;    // sheets cut short by invalid data
+    long malformedLines;   // CSV lines without a readable candidate id
+    final long[] gradeCounts = new long[GradeTable.gradeCount()];
+    final long[] averageCounts = new long[101]; // index = average, 0..100
+
+    // Returns the grade code (see GradeTable), or -1 for a candidate without any valid mark
+    int addCandidate(int total, int counted) {
+        candidates++;
+        if (counted == 0) {
+            noValidMarks++;
+            return -1;
+        }
+        int average = total / counted;
+        int grade = GradeTable.code(average);
+        graded++;
+        marksCounted += counted;
+        gradeCounts[grade]++;
+        averageCounts[average]++;
+        return grade;
+    }
+
+    MarkSheetStats merge(MarkSheetStats other) {
+        candidates += other.candidates;
+        graded += other.graded;
+        noValidMarks += other.noValidMarks;
+        marksCounted += other.marksCounted;
+        absentMarks += other.absentMarks;
+        invalidSheets += other.invalidSheets;
+        malformedLines += other.malformedLines;
+        for (int i = 0; i < gradeCounts.length; i++) {
+            gradeCounts[i] += other.gradeCounts[i];
+        }
+        for (int i = 0; i < averageCounts.length; i++) {
+            averageCounts[i] += other.averageCounts[i];
+        }
+        return this;
+    }
+
+    // Same candidates and grades (malformedLines is left out: binary files have no lines)
+    boolean sameAs(MarkSheetStats other) {
+        return candidates == other.candidates && graded == other.graded && noValidMarks == other.noValidMarks
+                && marksCounted == other.marksCounted && absentMarks == other.absentMarks
+                && invalidSheets == other.invalidSheets
+                && Arrays.equals(gradeCounts, other.gradeCounts)
+                && Arrays.equals(averageCounts, other.averageCounts);
+    }
+
+    void print() {
+        System.out.printf("Candidates: %,d (graded %,d, no valid marks %,d) | absent marks %,d | sheets stopped by invalid data %,d | malformed lines %,d%n",
+                candidates, graded, noValidMarks, absentMarks, invalidSheets, malformedLines);
+        System.out.println("Grade distribution:");
+        for (int i = 0; i < gradeCounts.length; i++) {
+            printBar(String.format("%-14s", GradeTable.name(i)), gradeCounts[i]);
+        }
+        System.out.println("Average marks histogram:");
+        for (int from = 0; from <= 100; from += 10) {
+            int to = Math.min(100, from + 9);
+            long count = 0;
+            for (int a = from; a <= to; a++) {
+                count += averageCounts[a];
+            }
+            printBar(String.format("%3d-%-3d", from, to), count);
+        }
+    }
+
+    private void printBar(String label, long count) {
+        int width = (graded == 0) ? 0 : (int) Math.round(50.0 * count / graded);
+        StringBuilder bar = new StringBuilder();
+        for (int i = 0; i < width; i++) {
+            bar.append('#');
+        }
+        System.out.printf("  %s %,12d  %s%n", label, count, bar);
+    }
+}
+
+class MarkFileAggregator {
+
+    // Optional per-candidate output; called from several worker threads at once
+    public interface CandidateSink {
+        void accept(int candidateId, int average, String grade);
+    }
+
+    public static final int ABSENT = -1;
+    public static final int MAX_MARK = 100;
+    public static final int BINARY_MAGIC = 0x4D524B31; // "MRK1"
+    public static final int BINARY_HEADER_BYTES = 8;
+
+    // Ranges bigger than this are split in two; each worker then streams its range through BUFFER
+    private static final long SPLIT_BYTES = 4 << 20;
+    private static final int BUFFER_BYTES = 256 << 10;
+
+    // One read buffer per worker thread, reused by every task it runs: memory = threads x BUFFER_BYTES
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_BYTES));
+
+    public static MarkSheetStats aggregateCsv(Path file, ForkJoinPool pool, CandidateSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return pool.invoke(new CsvTask(channel, 0, channel.size(), sink));
+        }
+    }
+
+    public static MarkSheetStats aggregateBinary(Path file, ForkJoinPool pool, CandidateSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_BYTES);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != BINARY_MAGIC) {
+                throw new IOException("Not a binary mark file: " + file);
+            }
+            int subjects = header.getInt();
+            int recordBytes = 4 + 2 * subjects;
+            long records = (channel.size() - BINARY_HEADER_BYTES) / recordBytes;
+            return pool.invoke(new BinaryTask(channel, subjects, 0, records, sink));
+        }
+    }
+
+    // ==========================================
+    // CSV: split on byte offsets, each task parses the lines that START in its range
+    // ==========================================
+    private static final class CsvTask extends RecursiveTask<MarkSheetStats> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final CandidateSink sink;
+
+        CsvTask(FileChannel channel, long start, long end, CandidateSink sink) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.sink = sink;
+        }
+
+        @Override
+        protected MarkSheetStats compute() {
+            if (end - start > SPLIT_BYTES) {
+                long mid = start + (end - start) / 2;
+                CsvTask right = new CsvTask(channel, mid, end, sink);
+                right.fork();
+                MarkSheetStats left = new CsvTask(channel, start, mid, sink).compute();
+                return left.merge(right.join());
+            }
+            try {
+                return parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private MarkSheetStats parse() throws IOException {
+            CsvParser parser = new CsvParser(sink);
+            ByteBuffer buffer = BUFFER.get();
+            // Unless we start right after a newline, the first (partial) line belongs to the previous range
+            boolean skipping = start > 0 && byteAt(start - 1) != '\n';
+            long pos = start;
+            if (!skipping && pos >= end) {
+                return parser.stats;
+            }
+
+            while (true) {
+                buffer.clear();
+                int n = channel.read(buffer, pos);
+                if (n <= 0) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer.get(i);
+                    if (skipping) {
+                        if (b == '\n') {
+                            skipping = false;
+                            if (pos + i + 1 >= end) {
+                                return parser.stats;
+                            }
+                        }
+                    } else if (parser.accept(b) && pos + i + 1 >= end) {
+                        return parser.stats; // the next line starts in the next range
+                    }
+                }
+                pos += n;
+            }
+            if (!skipping) {
+                parser.endOfFile();
+            }
+            return parser.stats;
+        }
+
+        private byte byteAt(long position) throws IOException {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            readFully(channel, one, position);
+            return one.get(0);
+        }
+    }
+
+    // Byte-at-a-time state machine, so a line may span two buffer fills
+    private static final class CsvParser {
+        final MarkSheetStats stats = new MarkSheetStats();
+        private final CandidateSink sink;
+
+        // current field
+        private int value;
+        private boolean negative;
+        private boolean digits;
+        private boolean unreadable;
+        // current line
+        private int field;
+        private boolean blank = true;
+        private int candidateId;
+        private boolean idOk;
+        private int total;
+        private int counted;
+        private boolean stopped;
+
+        CsvParser(CandidateSink sink) {
+            this.sink = sink;
+        }
+
+        // Returns true at the end of a line
+        boolean accept(byte b) {
+            if (b != '\n' && b != '\r' && b != ' ') {
+                blank = false;
+            }
+            if (b >= '0' && b <= '9') {
+                int digit = b - '0';
+                if (field == 0) {
+                    // The id is a full int, as Integer.parseInt reads it; past that the line is malformed
+                    long next = value * 10L + digit;
+                    if (next > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                        unreadable = true;
+                    } else {
+                        value = (int) next; // -MIN_VALUE wraps to MIN_VALUE, which negates to itself
+                    }
+                } else if (value < 100_000) { // a mark this big is already invalid; don't overflow
+                    value = value * 10 + digit;
+                }
+                digits = true;
+            } else if (b == ',') {
+                endField();
+            } else if (b == '\n') {
+                endField();
+                endLine();
+                return true;
+            } else if (b == '-' && !digits && !negative) {
+                negative = true;
+            } else if (b != '\r' && b != ' ') {
+                unreadable = true;
+            }
+            return false;
+        }
+
+        void endOfFile() {
+            if (!blank) { // last line without a newline
+                endField();
+                endLine();
+            }
+        }
+
+        private void endField() {
+            boolean readable = digits && !unreadable;
+            int number = negative ? -value : value;
+            if (field == 0) {
+                candidateId = number;
+                idOk = readable;
+            } else if (idOk && !stopped) {
+                if (readable && number == ABSENT) {
+                    stats.absentMarks++;
+                } else if (!readable || number < 0 || number > MAX_MARK) {
+                    stopped = true;
+                    stats.invalidSheets++;
+                } else {
+                    total += number;
+                    counted++;
+                }
+            }
+            field++;
+            value = 0;
+            negative = false;
+            digits = false;
+            unreadable = false;
+        }
+
+        private void endLine() {
+            if (idOk) {
+                int grade = stats.addCandidate(total, counted);
+                if (sink != null) {
+                    sink.accept(candidateId, (counted == 0) ? -1 : total / counted,
+                            (grade < 0) ? "No valid marks" : GradeTable.name(grade));
+                }
+            } else if (!blank) {
+                stats.malformedLines++;
+            }
+            field = 0;
+            blank = true;
+            total = 0;
+            counted = 0;
+            stopped = false;
+            idOk = false;
+        }
+    }
+
+    // ==========================================
+    // Binary: fixed-size records, split on record indexes
+    // ==========================================
+    private static final class BinaryTask extends RecursiveTask<MarkSheetStats> {
+        private final FileChannel channel;
+        private final int subjects;
+        private final long first;
+        private final long last; // exclusive
+        private final CandidateSink sink;
+
+        BinaryTask(FileChannel channel, int subjects, long first, long last, CandidateSink sink) {
+            this.channel = channel;
+            this.subjects = subjects;
+            this.first = first;
+            this.last = last;
+            this.sink = sink;
+        }
+
+        @Override
+        protected MarkSheetStats compute() {
+            int recordBytes = 4 + 2 * subjects;
+            if ((last - first) * recordBytes > SPLIT_BYTES) {
+                long mid = first + (last - first) / 2;
+                BinaryTask right = new BinaryTask(channel, subjects, mid, last, sink);
+                right.fork();
+                MarkSheetStats left = new BinaryTask(channel, subjects, first, mid, sink).compute();
+                return left.merge(right.join());
+            }
+            try {
+                return parse(recordBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private MarkSheetStats parse(int recordBytes) throws IOException {
+            MarkSheetStats stats = new MarkSheetStats();
+            ByteBuffer buffer = BUFFER.get();
+            int perFill = Math.max(1, BUFFER_BYTES / recordBytes);
+            long record = first;
+            while (record < last) {
+                int count = (int) Math.min(perFill, last - record);
+                buffer.clear().limit(count * recordBytes);
+                readFully(channel, buffer, BINARY_HEADER_BYTES + record * recordBytes);
+                buffer.flip();
+                for (int r = 0; r < count; r++) {
+                    int candidateId = buffer.getInt();
+                    int total = 0;
+                    int counted = 0;
+                    boolean stopped = false;
+                    for (int s = 0; s < subjects; s++) {
+                        int mark = buffer.getShort();
+                        if (stopped) {
+                            continue; // still have to move past the rest of the record
+                        }
+                        if (mark == ABSENT) {
+                            stats.absentMarks++;
+                        } else if (mark < 0 || mark > MAX_MARK) {
+                            stopped = true;
+                            stats.invalidSheets++;
+                        } else {
+                            total += mark;
+                            counted++;
+                        }
+                    }
+                    int grade = stats.addCandidate(total, counted);
+                    if (sink != null) {
+                        sink.accept(candidateId, (counted == 0) ? -1 : total / counted,
+                                (grade < 0) ? "No valid marks" : GradeTable.name(grade));
+                    }
+                }
+                record += count;
+            }
+            return stats;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file at " + position);
+            }
+            position += n;
+        }
+    }
+}
+
+public class Part17 {
+
+    private static final int SUBJECTS = 6;
+
+    public static void main(String[] args) throws Exception {
+        int candidates = (args.length > 0) ? Integer.parseInt(args[0]) : 2_000_000;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Path dir = Files.createTempDirectory("part17-");
+        Path smallCsv = dir.resolve("sample.csv");
+        Path csv = dir.resolve("marks.csv");
+        Path bin = dir.resolve("marks.bin");
+        try {
+            System.out.println("--- 1. Part 3's mark sheet and a few more ---");
+            Files.write(smallCsv, (
+                    "candidate,m1,m2,m3,m4,m5,m6\n"
+                    + "1,85,92,-1,45,999,78\n"      // Part 3's marks: 85+92+45 -> 74, C
+                    + "2,95,90,100,88,91,97\n"
+                    + "3,-1,-1,-1,-1,-1,-1\n"       // absent everywhere
+                    + "4,101,90,90,90,90,90\n"      // invalid first mark: nothing counted
+                    + "5,40,55,-1,62,58,35\n"
+                    + "2099999,80,90,-1,70,60,50\n"  // 7-digit id
+                    + "2147483647,50,50,50,50,50,50\n"
+                    + "2147483648,50,50,50,50,50,50\n" // id overflows an int: malformed
+                    + "99999999999,60,60,60,60,60,60").getBytes(StandardCharsets.US_ASCII));
+            ForkJoinPool single = new ForkJoinPool(1);
+            List<Integer> sampleIds = new ArrayList<>();
+            MarkSheetStats sample = MarkFileAggregator.aggregateCsv(smallCsv, single,
+                    (id, average, grade) -> {
+                        sampleIds.add(id);
+                        System.out.println("Candidate " + id + ": average "
+                                + (average < 0 ? "-" : String.valueOf(average)) + " -> " + grade);
+                    });
+            sample.print();
+            single.shutdown();
+            if (!sampleIds.equals(Arrays.asList(1, 2, 3, 4, 5, 2_099_999, Integer.MAX_VALUE))
+                    || sample.malformedLines != 3
+                    || sample.malformedLines != readWithBufferedReader(smallCsv).malformedLines) {
+                throw new IllegalStateException("Sample ids wrong: " + sampleIds + ", malformed " + sample.malformedLines);
+            }
+            System.out.println(">> SUCCESS: Long ids are read whole; ids that overflow an int are malformed lines.");
+
+            System.out.println("\n--- 2. Writing " + String.format("%,d", candidates) + " mark sheets (CSV and binary) ---");
+            writeFiles(csv, bin, candidates);
+            System.out.printf("CSV %,d bytes, binary %,d bytes%n", Files.size(csv), Files.size(bin));
+
+            System.out.println("\n--- 3. Same results from every reader ---");
+            MarkSheetStats reference = readWithBufferedReader(csv);
+            ForkJoinPool pool = new ForkJoinPool(maxThreads);
+            MarkSheetStats fromCsv = MarkFileAggregator.aggregateCsv(csv, pool, null);
+            MarkSheetStats fromBinary = MarkFileAggregator.aggregateBinary(bin, pool, null);
+            pool.shutdown();
+            if (!reference.sameAs(fromCsv) || !reference.sameAs(fromBinary)
+                    || reference.malformedLines != fromCsv.malformedLines) {
+                throw new IllegalStateException("Parallel results differ from the line-by-line reference");
+            }
+            fromCsv.print();
+            System.out.println(">> SUCCESS: CSV and binary fork/join results match a line-by-line BufferedReader pass.");
+
+            System.out.println("\n--- 4. Throughput (1.." + maxThreads + " threads, best of 3) ---");
+            benchmark("BufferedReader + split (1 thread)", csv, candidates, 0);
+            for (int threads = 1; threads < maxThreads; threads *= 2) {
+                benchmark("CSV fork/join", csv, candidates, threads);
+                benchmark("Binary fork/join", bin, candidates, threads);
+            }
+            benchmark("CSV fork/join", csv, candidates, maxThreads);
+            benchmark("Binary fork/join", bin, candidates, maxThreads);
+        } finally {
+            Files.deleteIfExists(smallCsv);
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(bin);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    // threads == 0 -> the line-by-line reference
+    private static void benchmark(String label, Path file, int candidates, int threads) throws IOException {
+        ForkJoinPool pool = (threads > 0) ? new ForkJoinPool(threads) : null;
+        long best = Long.MAX_VALUE;
+        try {
+            for (int round = 0; round < 4; round++) { // first round is warmup
+                long start = System.nanoTime();
+                if (pool == null) {
+                    readWithBufferedReader(file);
+                } else if (file.toString().endsWith(".csv")) {
+                    MarkFileAggregator.aggregateCsv(file, pool, null);
+                } else {
+                    MarkFileAggregator.aggregateBinary(file, pool, null);
+                }
+                long elapsed = System.nanoTime() - start;
+                if (round > 0) {
+                    best = Math.min(best, elapsed);
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        double seconds = best / 1_000_000_000.0;
+        System.out.printf("  %-34s %s  %,8.1f MB/s  %,12.0f candidates/s%n", label,
+                (threads > 0) ? String.format("%2d thread(s)", threads) : "           ",
+                Files.size(file) / seconds / (1 << 20), candidates / seconds);
+    }
+
+    // The obvious version: Part 3's loop over String.split. Used as the correctness reference.
+    private static MarkSheetStats readWithBufferedReader(Path csv) throws IOException {
+        MarkSheetStats stats = new MarkSheetStats();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    Integer.parseInt(fields[0].trim());
+                } catch (NumberFormatException e) {
+                    stats.malformedLines++;
+                    continue;
+                }
+                int total = 0;
+                int counted = 0;
+                for (int i = 1; i < fields.length; i++) {
+                    int score;
+                    try {
+                        score = Integer.parseInt(fields[i].trim());
+                    } catch (NumberFormatException e) {
+                        score = Integer.MAX_VALUE;
+                    }
+                    if (score == -1) {
+                        stats.absentMarks++;
+                        continue;
+                    }
+                    if (score < 0 || score > 100) {
+                        stats.invalidSheets++;
+                        break;
+                    }
+                    total += score;
+                    counted++;
+                }
+                stats.addCandidate(total, counted);
+            }
+        }
+        return stats;
+    }
+
+    // Marks around 65 +- 15; about 3% absent, 0.5% invalid (999), 0.1% absent for the whole exam
+    private static void writeFiles(Path csv, Path bin, int candidates) throws IOException {
+        Random random = new Random(17);
+        int[] marks = new int[SUBJECTS];
+        try (BufferedWriter text = Files.newBufferedWriter(csv, StandardCharsets.US_ASCII);
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bin), 1 << 16))) {
+            text.write("candidate,m1,m2,m3,m4,m5,m6\n");
+            data.writeInt(MarkFileAggregator.BINARY_MAGIC);
+            data.writeInt(SUBJECTS);
+            for (int c = 0; c < candidates; c++) {
+                int id = 100_000 + c;
+                boolean absentAll = random.nextInt(1000) == 0;
+                for (int s = 0; s < SUBJECTS; s++) {
+                    double r = random.nextDouble();
+                    if (absentAll || r < 0.03) {
+                        marks[s] = -1;
+                    } else if (r < 0.035) {
+                        marks[s] = 999;
+                    } else {
+                        marks[s] = (int) Math.max(0, Math.min(100, Math.round(65 + 15 * random.nextGaussian())));
+                    }
+                }
+                text.write(Integer.toString(id));
+                data.writeInt(id);
+                for (int s = 0; s < SUBJECTS; s++) {
+                    text.write(',');
+                    text.write(Integer.toString(marks[s]));
+                    data.writeShort(marks[s]);
+                }
+                text.write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Part 18: Table-Driven Grading (Part 3's switch at batch scale)
+ * Concepts Covered:
+ * 1. Switch ladder vs lookup table vs branch-free arithmetic (see GradeTable.java).
+ * 2. Branch prediction: the same switch is fast on sorted or predictable data and slow on random
+ *    data, because the CPU keeps guessing the wrong case.
+ * 3. Batch APIs: grading a whole int[] into a byte[] gives the JIT a loop it can vectorize.
+ * 4. Benchmarking: several input distributions, warmup, best of N rounds, identical results.
+ *
+ * Usage (GradeTable.java must sit next to this file):
+ *   java Part18 [averages] [rounds]
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class Part18 {
+
+    private interface Grader {
+        void run(int[] averages, int count);
+    }
+
+    private static byte[] codes;
+    private static String[] names;
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 10_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        System.out.println("--- 1. Same grade as Part 3's switch ---");
+        for (int average : new int[] {74, 93, 100, 60, 59, -5, 105}) {
+            String grade = GradeTable.grade(average);
+            System.out.println("Average " + average + " -> " + grade
+                    + " (same object as the constant: " + (grade == GradeTable.name(GradeTable.code(average))) + ")");
+        }
+        checkAllAgree();
+        System.out.println(">> SUCCESS: switch, table and batch agree for every average from -100,000 to 100,000 and the int extremes.");
+
+        codes = new byte[count];
+        names = new String[count];
+        Grader switchNames = (averages, n) -> {
+            for (int i = 0; i < n; i++) {
+                names[i] = part3Switch(averages[i]);
+            }
+        };
+        Grader tableNames = (averages, n) -> {
+            for (int i = 0; i < n; i++) {
+                names[i] = GradeTable.grade(averages[i]);
+            }
+        };
+        Grader switchCodes = (averages, n) -> {
+            for (int i = 0; i < n; i++) {
+                codes[i] = GradeTable.bySwitch(averages[i]);
+            }
+        };
+        Grader tableCodes = (averages, n) -> GradeTable.lookupAll(averages, codes, n);
+        Grader batchCodes = (averages, n) -> GradeTable.gradeAll(averages, codes, n);
+
+        String[] distributions = {"realistic (65 +- 15)", "realistic, sorted", "uniform 0..100", "out of range mix"};
+        for (int d = 0; d < distributions.length; d++) {
+            int[] averages = averages(d, count);
+            System.out.println("\n--- " + (d + 2) + ". " + distributions[d] + ": "
+                    + String.format("%,d", count) + " averages, best of " + rounds + " ---");
+            report("switch ladder   -> String", switchNames, averages, rounds);
+            report("table           -> String", tableNames, averages, rounds);
+            report("switch ladder   -> byte code", switchCodes, averages, rounds);
+            report("table (batch)   -> byte code", tableCodes, averages, rounds);
+            report("branch-free batch -> byte code", batchCodes, averages, rounds);
+        }
+    }
+
+    // The exact ladder from Part 3, returning its String literals
+    private static String part3Switch(int average) {
+        String grade;
+        switch (average / 10) {
+            case 10:
+            case 9:
+                grade = "A (Excellent)";
+                break;
+            case 8:
+                grade = "B (Very Good)";
+                break;
+            case 7:
+                grade = "C (Good)";
+                break;
+            case 6:
+                grade = "D (Pass)";
+                break;
+            default:
+                grade = "F (Fail)";
+        }
+        return grade;
+    }
+
+    private static void checkAllAgree() {
+        int[] averages = new int[200_005];
+        for (int i = 0; i <= 200_000; i++) {
+            averages[i] = i - 100_000;
+        }
+        averages[200_001] = Integer.MIN_VALUE;
+        averages[200_002] = Integer.MAX_VALUE;
+        averages[200_003] = Integer.MIN_VALUE + 1;
+        averages[200_004] = Integer.MAX_VALUE - 1;
+
+        byte[] table = new byte[averages.length];
+        byte[] batch = new byte[averages.length];
+        GradeTable.lookupAll(averages, table, averages.length);
+        GradeTable.gradeAll(averages, batch, averages.length);
+        for (int i = 0; i < averages.length; i++) {
+            int expected = GradeTable.bySwitch(averages[i]);
+            if (table[i] != expected || batch[i] != expected || GradeTable.code(averages[i]) != expected
+                    || GradeTable.grade(averages[i]) != part3Switch(averages[i])) { // == on purpose: interned
+                throw new IllegalStateException("Grades differ for average " + averages[i]);
+            }
+        }
+    }
+
+    private static int[] averages(int distribution, int count) {
+        Random random = new Random(18);
+        int[] averages = new int[count];
+        for (int i = 0; i < count; i++) {
+            switch (distribution) {
+                case 0:
+                case 1:
+                    averages[i] = (int) Math.max(0, Math.min(100, Math.round(65 + 15 * random.nextGaussian())));
+                    break;
+                case 2:
+                    averages[i] = random.nextInt(101);
+                    break;
+                default:
+                    // Corrupt input: every branch of the ladder plus negatives and values past 100
+                    averages[i] = random.nextInt(301) - 100;
+            }
+        }
+        if (distribution == 1) {
+            Arrays.sort(averages); // best case for the branch predictor
+        }
+        return averages;
+    }
+
+    private static void report(String label, Grader grader, int[] averages, int rounds) {
+        int count = averages.length;
+        for (int i = 0; i < 5; i++) { // warmup: let the JIT compile the loop first
+            grader.run(averages, count);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            grader.run(averages, count);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("  %-32s %6.2f ns/candidate  %,14.0f candidates/s%n",
+                label, (double) best / count, count / (best / 1_000_000_000.0));
+    }
+}
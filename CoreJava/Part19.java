@@ -0,0 +1,618 @@
+/**
+ * Part 19: Zero-Copy Record Tokenizer (Part 4's rawData at scale)
+ * Concepts Covered:
+ * 1. Where split/substring allocate: trim() and substring() copy characters into new Strings, and
+ *    split() builds a String[] (a fast path skips the regex for one-character separators, but
+ *    not the copies).
+ * 2. Offsets instead of copies: the tokenizer only records where each key and value starts and
+ *    ends in the original text, so reading a field costs nothing.
+ * 3. Parsing in place: int/long values are read straight from the characters/bytes.
+ * 4. Streaming: a file is read into one reused byte[] window; records are tokenized where they lie.
+ * 5. Measuring allocation: bytes allocated per record (HotSpot's per-thread allocation counter).
+ *
+ * Record format (Part 4): "  ID:101,Name:Alice,Role:Dev  " - fields separated by ',', each field
+ * "key:value". Whitespace around the record, keys and values is ignored, like trim().
+ * A field without ':' has an empty key and the whole field as its value.
+ *
+ * Usage:
+ *   java Part19 [records] [rounds]
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+final class FieldTokenizer {
+
+    public interface RecordHandler {
+        void record(FieldTokenizer fields);
+    }
+
+    private final char fieldSeparator;
+    private final char keyValueSeparator;
+
+    // The current window: either text or bytes (ASCII / UTF-8 separators), never both
+    private CharSequence text;
+    private byte[] bytes;
+
+    // Offsets into the window, 4 ints per field: key [start, end) and value [start, end).
+    // One array, reused for every record.
+    private static final int KEY_START = 0;
+    private static final int KEY_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    private int[] offsets;
+    private int count;
+
+    public FieldTokenizer() {
+        this(',', ':', 8);
+    }
+
+    public FieldTokenizer(char fieldSeparator, char keyValueSeparator, int expectedFields) {
+        this.fieldSeparator = fieldSeparator;
+        this.keyValueSeparator = keyValueSeparator;
+        this.offsets = new int[4 * Math.max(1, expectedFields)];
+    }
+
+    // Tokenizes text[start, end); returns the number of fields. The text must not change while in use.
+    public int reset(CharSequence record, int start, int end) {
+        this.text = record;
+        this.bytes = null;
+        return tokenize(start, end);
+    }
+
+    public int reset(CharSequence record) {
+        return reset(record, 0, record.length());
+    }
+
+    // Tokenizes bytes[start, end) without decoding them
+    public int reset(byte[] record, int start, int end) {
+        this.bytes = record;
+        this.text = null;
+        return tokenize(start, end);
+    }
+
+    public int fieldCount() {
+        return count;
+    }
+
+    // Index of the first field with this key, or -1
+    public int indexOf(String key) {
+        for (int i = 0; i < count; i++) {
+            if (regionEquals(offsets[4 * i + KEY_START], offsets[4 * i + KEY_END], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean keyEquals(int field, String key) {
+        checkField(field);
+        return regionEquals(offsets[4 * field + KEY_START], offsets[4 * field + KEY_END], key);
+    }
+
+    public boolean valueEquals(int field, String value) {
+        checkField(field);
+        return regionEquals(offsets[4 * field + VALUE_START], offsets[4 * field + VALUE_END], value);
+    }
+
+    public int valueStart(int field) {
+        checkField(field);
+        return offsets[4 * field + VALUE_START];
+    }
+
+    public int valueLength(int field) {
+        checkField(field);
+        return offsets[4 * field + VALUE_END] - offsets[4 * field + VALUE_START];
+    }
+
+    public int keyStart(int field) {
+        checkField(field);
+        return offsets[4 * field + KEY_START];
+    }
+
+    public int keyLength(int field) {
+        checkField(field);
+        return offsets[4 * field + KEY_END] - offsets[4 * field + KEY_START];
+    }
+
+    public int valueAsInt(int field) {
+        long value = valueAsLong(field);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Out of int range: " + valueAsString(field));
+        }
+        return (int) value;
+    }
+
+    // Parses the digits where they are: no substring, no Long.parseLong(String)
+    public long valueAsLong(int field) {
+        checkField(field);
+        int pos = offsets[4 * field + VALUE_START];
+        int end = offsets[4 * field + VALUE_END];
+        boolean negative = false;
+        if (pos < end && (charAt(pos) == '-' || charAt(pos) == '+')) {
+            negative = charAt(pos) == '-';
+            pos++;
+        }
+        // Accumulate negatively so Long.MIN_VALUE fits, like Long.parseLong
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = (bytes != null) ? parseDigits(bytes, pos, end, limit) : parseDigits(text, pos, end, limit);
+        if (pos == end || result > 0) {
+            throw new NumberFormatException("Not a number: \"" + valueAsString(field) + "\"");
+        }
+        return negative ? result : -result;
+    }
+
+    // Allocates: only for values that really have to become Strings
+    public String valueAsString(int field) {
+        checkField(field);
+        return region(offsets[4 * field + VALUE_START], offsets[4 * field + VALUE_END]);
+    }
+
+    public String keyAsString(int field) {
+        checkField(field);
+        return region(offsets[4 * field + KEY_START], offsets[4 * field + KEY_END]);
+    }
+
+    // ==========================================
+    // STREAMING FILE MODE
+    // One byte[] window is refilled from the file; each line is tokenized inside it.
+    // A line cut off at the end of the window is moved to the front before the next read.
+    // ==========================================
+    public static long forEachRecord(Path file, int bufferSize, RecordHandler handler) throws IOException {
+        FieldTokenizer tokenizer = new FieldTokenizer();
+        byte[] window = new byte[Math.max(64, bufferSize)];
+        ByteBuffer buffer = ByteBuffer.wrap(window);
+        long records = 0;
+        int filled = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            boolean eof = false;
+            while (!eof || filled > 0) {
+                if (!eof) {
+                    if (filled == window.length) {
+                        window = Arrays.copyOf(window, window.length * 2); // a line longer than the window
+                        buffer = ByteBuffer.wrap(window);
+                    }
+                    buffer.limit(window.length).position(filled);
+                    int n = channel.read(buffer);
+                    if (n < 0) {
+                        eof = true;
+                    } else {
+                        filled += n;
+                    }
+                }
+                int lineStart = 0;
+                for (int i = 0; i < filled; i++) {
+                    if (window[i] == '\n') {
+                        records += handle(tokenizer, window, lineStart, i, handler);
+                        lineStart = i + 1;
+                    }
+                }
+                if (eof) {
+                    records += handle(tokenizer, window, lineStart, filled, handler); // last line without '\n'
+                    filled = 0;
+                } else {
+                    System.arraycopy(window, lineStart, window, 0, filled - lineStart);
+                    filled -= lineStart;
+                }
+            }
+        }
+        return records;
+    }
+
+    private static int handle(FieldTokenizer tokenizer, byte[] window, int start, int end, RecordHandler handler) {
+        if (tokenizer.reset(window, start, end) == 0) {
+            return 0; // blank line
+        }
+        handler.record(tokenizer);
+        return 1;
+    }
+
+    // ==========================================
+    // INTERNALS
+    // The byte[] and CharSequence versions of each loop are written out twice on purpose: checking
+    // the mode once per record instead of once per character makes tokenizing several times faster.
+    // ==========================================
+    // Field count and offsets array are kept in locals and written back once at the end: updating
+    // this.count inside the loop stops the JIT from keeping them in registers (several times slower).
+    private int tokenize(int start, int end) {
+        int[] o = offsets;
+        int n = 0;
+        if (bytes != null) {
+            byte[] b = bytes;
+            start = skipSpaceForward(b, start, end);
+            end = skipSpaceBackward(b, start, end);
+            for (int fieldStart = start; start < end; ) {
+                int fieldEnd = fieldStart;
+                int separator = -1;
+                for (; fieldEnd < end; fieldEnd++) {
+                    int c = b[fieldEnd];
+                    if (c == fieldSeparator) {
+                        break;
+                    }
+                    if (c == keyValueSeparator && separator < 0) {
+                        separator = fieldEnd;
+                    }
+                }
+                if (4 * n == o.length) {
+                    o = grow();
+                }
+                int base = 4 * n++;
+                if (separator >= 0) {
+                    o[base + KEY_START] = skipSpaceForward(b, fieldStart, separator);
+                    o[base + KEY_END] = skipSpaceBackward(b, o[base + KEY_START], separator);
+                    o[base + VALUE_START] = skipSpaceForward(b, separator + 1, fieldEnd);
+                } else {
+                    o[base + KEY_START] = fieldStart;
+                    o[base + KEY_END] = fieldStart;
+                    o[base + VALUE_START] = skipSpaceForward(b, fieldStart, fieldEnd);
+                }
+                o[base + VALUE_END] = skipSpaceBackward(b, o[base + VALUE_START], fieldEnd);
+                if (fieldEnd == end) {
+                    break;
+                }
+                fieldStart = fieldEnd + 1;
+            }
+        } else {
+            CharSequence t = text;
+            start = skipSpaceForward(t, start, end);
+            end = skipSpaceBackward(t, start, end);
+            for (int fieldStart = start; start < end; ) {
+                int fieldEnd = fieldStart;
+                int separator = -1;
+                for (; fieldEnd < end; fieldEnd++) {
+                    char c = t.charAt(fieldEnd);
+                    if (c == fieldSeparator) {
+                        break;
+                    }
+                    if (c == keyValueSeparator && separator < 0) {
+                        separator = fieldEnd;
+                    }
+                }
+                if (4 * n == o.length) {
+                    o = grow();
+                }
+                int base = 4 * n++;
+                if (separator >= 0) {
+                    o[base + KEY_START] = skipSpaceForward(t, fieldStart, separator);
+                    o[base + KEY_END] = skipSpaceBackward(t, o[base + KEY_START], separator);
+                    o[base + VALUE_START] = skipSpaceForward(t, separator + 1, fieldEnd);
+                } else {
+                    o[base + KEY_START] = fieldStart;
+                    o[base + KEY_END] = fieldStart;
+                    o[base + VALUE_START] = skipSpaceForward(t, fieldStart, fieldEnd);
+                }
+                o[base + VALUE_END] = skipSpaceBackward(t, o[base + VALUE_START], fieldEnd);
+                if (fieldEnd == end) {
+                    break;
+                }
+                fieldStart = fieldEnd + 1;
+            }
+        }
+        count = n;
+        return n;
+    }
+
+    private int[] grow() {
+        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+        return offsets;
+    }
+
+    private static int skipSpaceForward(byte[] b, int pos, int end) {
+        while (pos < end && (b[pos] & 0xff) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpaceForward(CharSequence t, int pos, int end) {
+        while (pos < end && t.charAt(pos) <= ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipSpaceBackward(byte[] b, int start, int end) {
+        while (end > start && (b[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int skipSpaceBackward(CharSequence t, int start, int end) {
+        while (end > start && t.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    // Returns the negated value, or 1 if a character is not a digit or the value passes 'limit'
+    private static long parseDigits(byte[] b, int pos, int end, long limit) {
+        long result = 0;
+        long multiplyMin = limit / 10;
+        for (; pos < end; pos++) {
+            int digit = b[pos] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin || result * 10 < limit + digit) {
+                return 1;
+            }
+            result = result * 10 - digit;
+        }
+        return result;
+    }
+
+    private static long parseDigits(CharSequence t, int pos, int end, long limit) {
+        long result = 0;
+        long multiplyMin = limit / 10;
+        for (; pos < end; pos++) {
+            int digit = t.charAt(pos) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin || result * 10 < limit + digit) {
+                return 1;
+            }
+            result = result * 10 - digit;
+        }
+        return result;
+    }
+
+    private int charAt(int pos) {
+        return (bytes != null) ? (bytes[pos] & 0xff) : text.charAt(pos);
+    }
+
+    private boolean regionEquals(int start, int end, String s) {
+        int length = s.length();
+        if (end - start != length) {
+            return false;
+        }
+        if (bytes != null) {
+            byte[] b = bytes;
+            for (int i = 0; i < length; i++) {
+                if ((b[start + i] & 0xff) != s.charAt(i)) {
+                    return false;
+                }
+            }
+        } else {
+            CharSequence t = text;
+            for (int i = 0; i < length; i++) {
+                if (t.charAt(start + i) != s.charAt(i)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private String region(int start, int end) {
+        if (bytes != null) {
+            return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+        }
+        return text.subSequence(start, end).toString();
+    }
+
+    private void checkField(int field) {
+        if (field < 0 || field >= count) {
+            throw new IndexOutOfBoundsException("Field: " + field + ", Fields: " + count);
+        }
+    }
+}
+
+public class Part19 {
+
+    private static final String[] NAMES = {"Alice", "Bob", "Charlie", "Deepa", "Eshan", "Farah", "Gaurav", "Harsh"};
+    private static final String[] ROLES = {"Dev", "QA", "Ops", "Manager", "Intern"};
+
+    private interface Parser {
+        long parse(String[] records);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int recordCount = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        System.out.println("--- 1. Part 4's rawData without trim/split/substring ---");
+        String rawData = "  ID:101,Name:Alice,Role:Dev  ";
+        FieldTokenizer fields = new FieldTokenizer();
+        fields.reset(rawData);
+        for (int i = 0; i < fields.fieldCount(); i++) {
+            System.out.println("Field " + i + ": key at " + fields.keyStart(i) + " (" + fields.keyLength(i)
+                    + " chars), value at " + fields.valueStart(i) + " (" + fields.valueLength(i) + " chars)");
+        }
+        int role = fields.indexOf("Role");
+        System.out.println("Extracted Role: " + fields.valueAsString(role) + " | is Dev: " + fields.valueEquals(role, "Dev"));
+        System.out.println("ID as int (parsed in place): " + fields.valueAsInt(fields.indexOf("ID")));
+
+        String[] records = generate(recordCount);
+        System.out.println("\n--- 2. Same values as split/substring (" + String.format("%,d", recordCount) + " records) ---");
+        Parser splitParser = Part19::parseWithSplit;
+        Parser charSequenceParser = Part19::parseWithTokenizer;
+        long expected = splitParser.parse(records);
+        if (charSequenceParser.parse(records) != expected) {
+            throw new IllegalStateException("Tokenizer and split/substring disagree");
+        }
+        byte[] allBytes = joinLines(records);
+        if (parseBytes(allBytes) != expected) {
+            throw new IllegalStateException("byte[] tokenizer and split/substring disagree");
+        }
+        System.out.println("Checksum (sum of ID + Salary + Role length): " + expected);
+        System.out.println(">> SUCCESS: String, byte[] and split/substring parsing agree.");
+
+        System.out.println("\n--- 3. Parsing throughput and allocation (best of " + rounds + " rounds) ---");
+        report("trim + split + substring + parseInt", () -> splitParser.parse(records), rounds, recordCount);
+        report("FieldTokenizer on String", () -> charSequenceParser.parse(records), rounds, recordCount);
+        report("FieldTokenizer on byte[]", () -> parseBytes(allBytes), rounds, recordCount);
+
+        System.out.println("\n--- 4. Streaming a file ---");
+        Path file = Files.createTempFile("part19-", ".txt");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (String record : records) {
+                    writer.write(record);
+                    writer.write('\n');
+                }
+            }
+            long fileBytes = Files.size(file);
+            report("BufferedReader + split", () -> readWithSplit(file), 3, recordCount, fileBytes);
+            report("FieldTokenizer.forEachRecord", () -> readWithTokenizer(file), 3, recordCount, fileBytes);
+            if (readWithSplit(file) != expected || readWithTokenizer(file) != expected) {
+                throw new IllegalStateException("File parsing disagrees with the in-memory result");
+            }
+            System.out.println(">> SUCCESS: both file readers give the same checksum.");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // ==========================================
+    // The two approaches, computing the same checksum
+    // ==========================================
+    private static long parseWithSplit(String[] records) {
+        long sum = 0;
+        for (String record : records) {
+            sum += checksum(record.trim().split(","));
+        }
+        return sum;
+    }
+
+    private static long checksum(String[] parts) {
+        long sum = 0;
+        for (String part : parts) {
+            int colon = part.indexOf(':');
+            String key = part.substring(0, colon);
+            String value = part.substring(colon + 1);
+            if (key.equals("ID") || key.equals("Salary")) {
+                sum += Integer.parseInt(value);
+            } else if (key.equals("Role")) {
+                sum += value.length();
+            }
+        }
+        return sum;
+    }
+
+    private static final FieldTokenizer TOKENIZER = new FieldTokenizer();
+
+    private static long parseWithTokenizer(String[] records) {
+        long sum = 0;
+        for (String record : records) {
+            TOKENIZER.reset(record);
+            sum += checksum(TOKENIZER);
+        }
+        return sum;
+    }
+
+    private static long checksum(FieldTokenizer fields) {
+        long sum = 0;
+        for (int i = 0; i < fields.fieldCount(); i++) {
+            if (fields.keyEquals(i, "ID") || fields.keyEquals(i, "Salary")) {
+                sum += fields.valueAsInt(i);
+            } else if (fields.keyEquals(i, "Role")) {
+                sum += fields.valueLength(i);
+            }
+        }
+        return sum;
+    }
+
+    private static long parseBytes(byte[] lines) {
+        long sum = 0;
+        int start = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i] == '\n') {
+                TOKENIZER.reset(lines, start, i);
+                sum += checksum(TOKENIZER);
+                start = i + 1;
+            }
+        }
+        return sum;
+    }
+
+    private static long readWithSplit(Path file) {
+        long sum = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sum += checksum(line.trim().split(","));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sum;
+    }
+
+    private static long readWithTokenizer(Path file) {
+        long[] sum = new long[1];
+        try {
+            FieldTokenizer.forEachRecord(file, 64 << 10, fields -> sum[0] += checksum(fields));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return sum[0];
+    }
+
+    // ==========================================
+    // Data and measurement
+    // ==========================================
+    private static String[] generate(int count) {
+        Random random = new Random(19);
+        String[] records = new String[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = "  ID:" + (100 + i) + ",Name:" + NAMES[random.nextInt(NAMES.length)]
+                    + ",Role:" + ROLES[random.nextInt(ROLES.length)] + ",Salary:" + (20_000 + random.nextInt(180_000)) + "  ";
+        }
+        return records;
+    }
+
+    private static byte[] joinLines(String[] records) {
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private interface Pass {
+        long run();
+    }
+
+    private static void report(String label, Pass pass, int rounds, int records) {
+        report(label, pass, rounds, records, 0);
+    }
+
+    private static void report(String label, Pass pass, int rounds, int records, long fileBytes) {
+        long sink = 0;
+        for (int i = 0; i < 3; i++) { // warmup: let the JIT compile the loop first
+            sink += pass.run();
+        }
+        long best = Long.MAX_VALUE;
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            sink += pass.run();
+            best = Math.min(best, System.nanoTime() - start);
+            allocated = Math.min(allocated, allocatedBytes() - bytesBefore);
+        }
+        double seconds = best / 1_000_000_000.0;
+        String throughput = (fileBytes > 0)
+                ? String.format("%,8.1f MB/s", fileBytes / seconds / (1 << 20))
+                : String.format("%,6.1f ns/record", (double) best / records);
+        String allocation = (allocatedBytes() >= 0) ? String.format("%,7.1f bytes allocated/record", (double) allocated / records) : "";
+        // Printing the sink keeps the JIT from removing a loop whose result is never used
+        System.out.printf("  %-36s %s  %,12.0f records/s  %s  (check %d)%n",
+                label, throughput, records / seconds, allocation, sink & 0xff);
+    }
+
+    // HotSpot's per-thread allocation counter; -1 on JVMs without it
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -57,6 +57,13 @@ class EmployeeData {
      * Demonstrates 'Local Variables' - variables that die when the method ends.
      */
     public void calculateAnnualPackage() {
+        double totalPackage = annualPackage();
+
+        System.out.println("Annual Package for " + this.employeeName + ": Rs " + totalPackage);
+    }
+
+    // The calculation alone, without printing (Part 15 runs it for millions of employees)
+    public double annualPackage() {
         // 'bonus' is a LOCAL variable. Not accessible outside.
         double bonus = 1000.00;
 
@@ -68,9 +75,7 @@ class EmployeeData {
             bonus += 500; // Extra bonus for high rating
         }
 
-        double totalPackage = (this.monthlySalary * 12) + bonus;
-
-        System.out.println("Annual Package for " + this.employeeName + ": Rs " + totalPackage);
+        return (this.monthlySalary * 12) + bonus;
     }
 
     public void showDetails() {
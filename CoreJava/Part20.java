@@ -0,0 +1,420 @@
+/**
+ * Part 20: Matrix Engine (Part 4's int[][] at scale)
+ * Concepts Covered:
+ * 1. Flat row-major storage: element (i, j) lives at data[i * cols + j] in one int[], instead of
+ *    an array of separate row arrays (one object and one pointer chase per row).
+ * 2. Loop order: i-k-j walks both matrices along rows, the naive i-j-k walks B down its columns.
+ * 3. Cache blocking (tiling): work on blocks of B small enough to stay in the L2 cache.
+ * 4. Fork/Join: disjoint bands of result rows computed in parallel, no locking needed.
+ * 5. Vectorization: the innermost loop is a plain contiguous int loop that the JIT turns into SIMD.
+ *    (The Vector API is an incubator module that needs extra compiler flags, so it is not used.)
+ * 6. Benchmarking across sizes: from a working set that fits in L1 to one larger than L2/L3.
+ *
+ * Usage:
+ *   java Part20 [sizes, e.g. 64,256,512,1024] [maxNaiveSize]
+ * The naive int[][] multiply is only timed up to maxNaiveSize (default 1024); beyond that it takes minutes.
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+class IntMatrix {
+
+    // Block sizes for multiply: a 128 x 1024 block of B (512 KB) stays in the L2 cache while
+    // 64 rows of A are multiplied with it, instead of all of B being re-read for every row of A.
+    // The 1024-wide rows keep the vectorized inner loop long.
+    static final int TILE_ROWS = 64;
+    static final int TILE_INNER = 128;
+    static final int TILE_COLS = 1024;
+    private static final int TRANSPOSE_TILE = 32;
+
+    private final int rows;
+    private final int cols;
+    private final int[] data; // row-major
+
+    public IntMatrix(int rows, int cols) {
+        if (rows <= 0 || cols <= 0 || (long) rows * cols > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bad matrix size: " + rows + " x " + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.data = new int[rows * cols];
+    }
+
+    public static IntMatrix of(int[][] values) {
+        IntMatrix m = new IntMatrix(values.length, values[0].length);
+        for (int i = 0; i < m.rows; i++) {
+            if (values[i].length != m.cols) {
+                throw new IllegalArgumentException("Row " + i + " has " + values[i].length + " columns, expected " + m.cols);
+            }
+            System.arraycopy(values[i], 0, m.data, i * m.cols, m.cols);
+        }
+        return m;
+    }
+
+    public static IntMatrix random(int rows, int cols, int bound, long seed) {
+        IntMatrix m = new IntMatrix(rows, cols);
+        Random random = new Random(seed);
+        for (int i = 0; i < m.data.length; i++) {
+            m.data[i] = random.nextInt(bound);
+        }
+        return m;
+    }
+
+    public int get(int row, int col) {
+        return data[index(row, col)];
+    }
+
+    public void set(int row, int col, int value) {
+        data[index(row, col)] = value;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int[][] toArray() {
+        int[][] result = new int[rows][];
+        for (int i = 0; i < rows; i++) {
+            result[i] = Arrays.copyOfRange(data, i * cols, (i + 1) * cols);
+        }
+        return result;
+    }
+
+    // ==========================================
+    // MULTIPLY (int arithmetic, overflow wraps around exactly like the int[][] version)
+    // ==========================================
+
+    // i-k-j order without tiles: rows of B and C are read front to back, but for big matrices
+    // B no longer fits in cache and is re-read from memory for every row of A
+    public IntMatrix multiplySimple(IntMatrix other) {
+        checkMultiply(other);
+        IntMatrix c = new IntMatrix(rows, other.cols);
+        int n = cols;
+        int m = other.cols;
+        int[] a = data;
+        int[] b = other.data;
+        int[] out = c.data;
+        for (int i = 0; i < rows; i++) {
+            for (int k = 0; k < n; k++) {
+                int aik = a[i * n + k];
+                int bk = k * m;
+                int ci = i * m;
+                for (int j = 0; j < m; j++) {
+                    out[ci + j] += aik * b[bk + j];
+                }
+            }
+        }
+        return c;
+    }
+
+    public IntMatrix multiply(IntMatrix other) {
+        checkMultiply(other);
+        IntMatrix c = new IntMatrix(rows, other.cols);
+        multiplyRows(this, other, c, 0, rows);
+        return c;
+    }
+
+    public IntMatrix multiplyParallel(IntMatrix other, ForkJoinPool pool) {
+        checkMultiply(other);
+        IntMatrix c = new IntMatrix(rows, other.cols);
+        // A few bands per worker so an early finisher can steal more work
+        int band = Math.max(TILE_ROWS, roundUpToTile(rows / (4 * pool.getParallelism())));
+        pool.invoke(new MultiplyTask(this, other, c, 0, rows, band));
+        return c;
+    }
+
+    // C[rowFrom..rowTo) += A[rowFrom..rowTo) * B, one block at a time
+    private static void multiplyRows(IntMatrix am, IntMatrix bm, IntMatrix cm, int rowFrom, int rowTo) {
+        int n = am.cols;
+        int m = bm.cols;
+        int[] a = am.data;
+        int[] b = bm.data;
+        int[] c = cm.data;
+        for (int i0 = rowFrom; i0 < rowTo; i0 += TILE_ROWS) {
+            int iMax = Math.min(i0 + TILE_ROWS, rowTo);
+            for (int k0 = 0; k0 < n; k0 += TILE_INNER) {
+                int kMax = Math.min(k0 + TILE_INNER, n);
+                for (int j0 = 0; j0 < m; j0 += TILE_COLS) {
+                    int jMax = Math.min(j0 + TILE_COLS, m);
+                    for (int i = i0; i < iMax; i++) {
+                        int ai = i * n;
+                        int ci = i * m;
+                        for (int k = k0; k < kMax; k++) {
+                            int aik = a[ai + k];
+                            int bk = k * m;
+                            for (int j = j0; j < jMax; j++) { // contiguous: vectorized by the JIT
+                                c[ci + j] += aik * b[bk + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class MultiplyTask extends RecursiveAction {
+        private final IntMatrix a;
+        private final IntMatrix b;
+        private final IntMatrix c;
+        private final int rowFrom;
+        private final int rowTo;
+        private final int band;
+
+        MultiplyTask(IntMatrix a, IntMatrix b, IntMatrix c, int rowFrom, int rowTo, int band) {
+            this.a = a;
+            this.b = b;
+            this.c = c;
+            this.rowFrom = rowFrom;
+            this.rowTo = rowTo;
+            this.band = band;
+        }
+
+        @Override
+        protected void compute() {
+            if (rowTo - rowFrom <= band) {
+                multiplyRows(a, b, c, rowFrom, rowTo);
+                return;
+            }
+            // Split on a block boundary so every task works on whole blocks of rows
+            int mid = rowFrom + roundUpToTile((rowTo - rowFrom) / 2);
+            invokeAll(new MultiplyTask(a, b, c, rowFrom, mid, band),
+                    new MultiplyTask(a, b, c, mid, rowTo, band));
+        }
+    }
+
+    // ==========================================
+    // TRANSPOSE AND REDUCTIONS
+    // ==========================================
+
+    // Copies TRANSPOSE_TILE x TRANSPOSE_TILE blocks, so both the reads and the (strided) writes
+    // stay inside a few cache lines per block
+    public IntMatrix transpose() {
+        IntMatrix t = new IntMatrix(cols, rows);
+        int[] src = data;
+        int[] dst = t.data;
+        for (int i0 = 0; i0 < rows; i0 += TRANSPOSE_TILE) {
+            int iMax = Math.min(i0 + TRANSPOSE_TILE, rows);
+            for (int j0 = 0; j0 < cols; j0 += TRANSPOSE_TILE) {
+                int jMax = Math.min(j0 + TRANSPOSE_TILE, cols);
+                for (int i = i0; i < iMax; i++) {
+                    for (int j = j0; j < jMax; j++) {
+                        dst[j * rows + i] = src[i * cols + j];
+                    }
+                }
+            }
+        }
+        return t;
+    }
+
+    public long sum() {
+        long total = 0;
+        for (int value : data) {
+            total += value;
+        }
+        return total;
+    }
+
+    public long[] rowSums() {
+        long[] sums = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            long s = 0;
+            for (int j = i * cols, end = j + cols; j < end; j++) {
+                s += data[j];
+            }
+            sums[i] = s;
+        }
+        return sums;
+    }
+
+    // Still reads row by row: each row is added into all the column totals at once
+    public long[] columnSums() {
+        long[] sums = new long[cols];
+        for (int i = 0; i < rows; i++) {
+            int base = i * cols;
+            for (int j = 0; j < cols; j++) {
+                sums[j] += data[base + j];
+            }
+        }
+        return sums;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IntMatrix)) {
+            return false;
+        }
+        IntMatrix other = (IntMatrix) o;
+        return rows == other.rows && cols == other.cols && Arrays.equals(data, other.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + cols) + Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(rows, 8); i++) {
+            for (int j = 0; j < Math.min(cols, 8); j++) {
+                sb.append(get(i, j)).append(' ');
+            }
+            sb.append(cols > 8 ? "...\n" : "\n");
+        }
+        return sb.append(rows > 8 ? "...\n" : "").toString();
+    }
+
+    private int index(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") outside " + rows + " x " + cols);
+        }
+        return row * cols + col;
+    }
+
+    private void checkMultiply(IntMatrix other) {
+        if (cols != other.rows) {
+            throw new IllegalArgumentException("Cannot multiply " + rows + " x " + cols + " by " + other.rows + " x " + other.cols);
+        }
+    }
+
+    private static int roundUpToTile(int n) {
+        return (n + TILE_ROWS - 1) / TILE_ROWS * TILE_ROWS;
+    }
+}
+
+public class Part20 {
+
+    private interface Pass {
+        Object run();
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = (args.length > 0)
+                ? Arrays.stream(args[0].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray()
+                : new int[] {64, 256, 512, 1024};
+        int maxNaive = (args.length > 1) ? Integer.parseInt(args[1]) : 1024;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        System.out.println("--- 1. Part 4's matrix, flat ---");
+        IntMatrix matrix = IntMatrix.of(new int[][] {{1, 2, 3}, {4, 5, 6}, {7, 8, 9}});
+        System.out.print("Matrix:\n" + matrix);
+        System.out.print("Transpose:\n" + matrix.transpose());
+        System.out.print("Matrix x Matrix:\n" + matrix.multiply(matrix));
+        System.out.println("Sum " + matrix.sum() + " | row sums " + Arrays.toString(matrix.rowSums())
+                + " | column sums " + Arrays.toString(matrix.columnSums()));
+
+        System.out.println("\n--- 2. All multiply versions agree ---");
+        // Odd sizes on purpose: tiles that don't divide the matrix evenly
+        IntMatrix a = IntMatrix.random(197, 131, 1000, 1);
+        IntMatrix b = IntMatrix.random(131, 223, 1000, 2);
+        IntMatrix expected = IntMatrix.of(naiveMultiply(a.toArray(), b.toArray()));
+        if (!expected.equals(a.multiplySimple(b)) || !expected.equals(a.multiply(b))
+                || !expected.equals(a.multiplyParallel(b, pool))
+                || !IntMatrix.of(naiveTranspose(a.toArray())).equals(a.transpose())) {
+            throw new IllegalStateException("Matrix results differ from the int[][] versions");
+        }
+        System.out.println(">> SUCCESS: naive int[][], simple, tiled and parallel results are identical.");
+
+        System.out.println("\n--- 3. Multiply, n x n (" + pool.getParallelism() + " worker threads for the parallel version) ---");
+        for (int n : sizes) {
+            IntMatrix x = IntMatrix.random(n, n, 100, 3);
+            IntMatrix y = IntMatrix.random(n, n, 100, 4);
+            int[][] xArray = x.toArray();
+            int[][] yArray = y.toArray();
+            System.out.printf("n = %d (3 matrices = %s)%n", n, size(3L * n * n * 4));
+            double work = (double) n * n * n; // multiply-adds
+            IntMatrix tiled = (IntMatrix) report("flat, tiled", () -> x.multiply(y), work);
+            if (n <= maxNaive) {
+                int[][] naive = (int[][]) report("int[][] naive i-j-k", () -> naiveMultiply(xArray, yArray), work);
+                if (!IntMatrix.of(naive).equals(tiled)) {
+                    throw new IllegalStateException("Tiled multiply differs from naive for n = " + n);
+                }
+            } else {
+                System.out.println("  int[][] naive i-j-k               (skipped, n > " + maxNaive + ")");
+            }
+            report("flat, i-k-j, no tiles", () -> x.multiplySimple(y), work);
+            IntMatrix parallel = (IntMatrix) report("flat, tiled, fork/join", () -> x.multiplyParallel(y, pool), work);
+            if (!parallel.equals(tiled)) {
+                throw new IllegalStateException("Parallel multiply differs for n = " + n);
+            }
+        }
+
+        System.out.println("\n--- 4. Transpose and column sums, n x n ---");
+        for (int n : sizes) {
+            int big = n * 4; // these are O(n^2): use bigger matrices so the timings mean something
+            IntMatrix x = IntMatrix.random(big, big, 100, 5);
+            int[][] xArray = x.toArray();
+            System.out.printf("n = %d (%s per matrix)%n", big, size((long) big * big * 4));
+            double elements = (double) big * big;
+            report("int[][] transpose", () -> naiveTranspose(xArray), elements);
+            report("flat, tiled transpose", x::transpose, elements);
+            report("int[][] column sums (column order)", () -> naiveColumnSums(xArray), elements);
+            report("flat column sums (row order)", x::columnSums, elements);
+        }
+    }
+
+    // Part 4 style: array of arrays, textbook loop order
+    static int[][] naiveMultiply(int[][] a, int[][] b) {
+        int n = a.length;
+        int m = b[0].length;
+        int inner = b.length;
+        int[][] c = new int[n][m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                int sum = 0;
+                for (int k = 0; k < inner; k++) {
+                    sum += a[i][k] * b[k][j];
+                }
+                c[i][j] = sum;
+            }
+        }
+        return c;
+    }
+
+    static int[][] naiveTranspose(int[][] a) {
+        int[][] t = new int[a[0].length][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[i].length; j++) {
+                t[j][i] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    static long[] naiveColumnSums(int[][] a) {
+        long[] sums = new long[a[0].length];
+        for (int j = 0; j < sums.length; j++) {
+            for (int i = 0; i < a.length; i++) {
+                sums[j] += a[i][j];
+            }
+        }
+        return sums;
+    }
+
+    // One warmup run, then the best of up to 5 runs (fewer for slow cases); 'work' = operations per run
+    private static Object report(String label, Pass pass, double work) {
+        Object result = pass.run();
+        long best = Long.MAX_VALUE;
+        long spent = 0;
+        for (int round = 0; round < 5 && (round < 2 || spent < 2_000_000_000L); round++) {
+            long start = System.nanoTime();
+            result = pass.run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            spent += elapsed;
+        }
+        System.out.printf("  %-36s %,10.2f ms  %,8.2f G ops/s%n", label, best / 1_000_000.0, work / best);
+        return result;
+    }
+
+    private static String size(long bytes) {
+        return (bytes < (1 << 20)) ? (bytes >> 10) + " KB" : String.format("%.1f MB", bytes / (double) (1 << 20));
+    }
+}
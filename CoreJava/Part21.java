@@ -0,0 +1,488 @@
+/**
+ * Part 21: Dictionary Encoding (Part 4's String Pool for our own data)
+ * Concepts Covered:
+ * 1. Duplicate Strings: every name, role and company read from a file or a ResultSet is a new
+ *    String object, just like Part 4's 'new String("Java")', even when millions of them are equal.
+ * 2. Dictionary encoding: each distinct value gets a dense int code (0, 1, 2, ...) and records
+ *    store the code; equality becomes an int compare and counting by value an array index.
+ * 3. Concurrency: lock-free lookups through ConcurrentHashMap, a short lock only to add a new value.
+ * 4. Bounded + weak interning: the dictionary stops growing at a limit; values after that are
+ *    de-duplicated by a fixed-size table of WeakReferences, so strings nobody uses any more can
+ *    still be garbage collected (String.intern() keeps them in the JVM's global table).
+ * 5. Benchmarking: heap per record and equality/grouping speed on millions of records.
+ *
+ * Usage:
+ *   java Part21 [records] [rounds]
+ */
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+// ==========================================
+// STRING -> DENSE INT CODE
+// ==========================================
+class StringDictionary {
+
+    public static final int NO_CODE = -1;
+
+    private final int maxCodes;
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final WeakInterner overflow;
+    private volatile String[] values; // code -> value; replaced by a bigger copy when full
+    private volatile boolean full;
+    private int size; // guarded by 'this'
+
+    // maxCodes = most distinct values that get a code; overflowSlots = size of the weak table
+    // that de-duplicates values arriving after that
+    public StringDictionary(int maxCodes, int overflowSlots) {
+        if (maxCodes <= 0) {
+            throw new IllegalArgumentException("maxCodes must be positive: " + maxCodes);
+        }
+        this.maxCodes = maxCodes;
+        this.values = new String[Math.min(16, maxCodes)];
+        this.overflow = new WeakInterner(overflowSlots);
+    }
+
+    // Code of the value, adding it if there is still room; NO_CODE once the dictionary is full
+    public int encode(String value) {
+        Integer code = codes.get(value); // no lock: the common case for repeated values
+        if (code != null) {
+            return code;
+        }
+        return full ? NO_CODE : add(value);
+    }
+
+    // Code of the value without adding it (e.g. for a search term); NO_CODE if it was never encoded
+    public int code(String value) {
+        Integer code = codes.get(value);
+        return (code == null) ? NO_CODE : code;
+    }
+
+    public String decode(int code) {
+        String[] v = values;
+        if (code < 0 || code >= v.length || v[code] == null) {
+            throw new IllegalArgumentException("Unknown code: " + code);
+        }
+        return v[code];
+    }
+
+    // One shared instance per distinct value: from the dictionary if the value has a code,
+    // otherwise from the weak table (best effort there, see WeakInterner)
+    public String canonical(String value) {
+        int code = encode(value);
+        return (code == NO_CODE) ? overflow.intern(value) : decode(code);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code; // another thread added it while we waited for the lock
+        }
+        if (size == maxCodes) {
+            full = true;
+            return NO_CODE;
+        }
+        String[] v = values;
+        if (size == v.length) {
+            v = Arrays.copyOf(v, (int) Math.min(maxCodes, 2L * v.length));
+        }
+        v[size] = value;
+        // Volatile write before the code is handed out: any thread that gets the code
+        // from the map (or from a record built with it) also sees the slot
+        values = v;
+        codes.put(value, size);
+        return size++;
+    }
+}
+
+// ==========================================
+// BOUNDED, WEAKLY-REFERENCED INTERN TABLE
+// ==========================================
+// Direct-mapped like a CPU cache: one slot per hash, a new value simply replaces the old one.
+// Never returns a wrong value, but two equal strings that collide with a third can end up as
+// two instances, so callers still compare with equals() (which checks == first anyway).
+class WeakInterner {
+
+    private final AtomicReferenceArray<WeakReference<String>> slots;
+    private final int mask;
+
+    public WeakInterner(int slots) {
+        int capacity = 1;
+        while (capacity < slots) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public String intern(String value) {
+        int h = value.hashCode();
+        int index = (h ^ (h >>> 16)) & mask;
+        WeakReference<String> ref = slots.get(index);
+        String cached = (ref == null) ? null : ref.get();
+        if (value.equals(cached)) {
+            return cached;
+        }
+        slots.set(index, new WeakReference<>(value));
+        return value;
+    }
+
+    // Values still reachable from somewhere else (the rest have been garbage collected)
+    public int liveCount() {
+        int live = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            WeakReference<String> ref = slots.get(i);
+            if (ref != null && ref.get() != null) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
+
+// ==========================================
+// RECORDS: STRING FIELDS VS CODES
+// ==========================================
+// Like EmployeeData, but with the name, role and company stored per record as they come
+// out of a file or a database (Part 2's companyName is static, so it is never duplicated)
+class EmployeeRecord {
+    final int id;
+    final String name;
+    final String role;
+    final String company;
+
+    EmployeeRecord(int id, String name, String role, String company) {
+        this.id = id;
+        this.name = name;
+        this.role = role;
+        this.company = company;
+    }
+}
+
+class CodedEmployee {
+    final int id;
+    final int nameCode;
+    final int roleCode;
+    final int companyCode;
+
+    CodedEmployee(int id, int nameCode, int roleCode, int companyCode) {
+        this.id = id;
+        this.nameCode = nameCode;
+        this.roleCode = roleCode;
+        this.companyCode = companyCode;
+    }
+
+    static CodedEmployee encode(EmployeeRecord r, StringDictionary names, StringDictionary roles, StringDictionary companies) {
+        return new CodedEmployee(r.id, names.encode(r.name), roles.encode(r.role), companies.encode(r.company));
+    }
+}
+
+public class Part21 {
+
+    private interface Pass {
+        long run();
+    }
+
+    private static final String[] FIRST_NAMES = {
+            "Harsh", "Aditya", "Priya", "Rahul", "Ananya", "Vikram", "Sneha", "Arjun", "Kavya", "Rohan",
+            "Isha", "Karan", "Meera", "Siddharth", "Pooja", "Nikhil", "Divya", "Amit", "Riya", "Varun",
+            "Neha", "Manish", "Shreya", "Akash", "Tanvi", "Yash", "Nisha", "Gaurav", "Aarti", "Deepak",
+            "Simran", "Kunal", "Payal", "Abhishek", "Swati", "Vivek", "Anjali", "Sandeep", "Komal", "Ravi"};
+    private static final String[] LAST_NAMES = {
+            "Kasliwal", "Nair", "Sharma", "Verma", "Iyer", "Reddy", "Patel", "Gupta", "Mehta", "Joshi",
+            "Rao", "Menon", "Kulkarni", "Desai", "Chopra", "Malhotra", "Bose", "Das", "Pillai", "Agarwal",
+            "Kapoor", "Saxena", "Bhat", "Shetty", "Mishra", "Pandey", "Chauhan", "Thakur", "Banerjee", "Ghosh",
+            "Sinha", "Jain", "Kumar", "Singh", "Yadav", "Naidu", "Hegde", "Kamath", "Srinivasan", "Mukherjee"};
+    private static final String[] ROLES = {"Dev", "QA", "Manager", "Analyst", "DevOps", "Architect", "Intern", "HR"};
+    private static final String[] COMPANIES = new String[50];
+
+    static {
+        COMPANIES[0] = "TechCorp Solutions";
+        COMPANIES[1] = "Global Tech Industries";
+        for (int i = 2; i < COMPANIES.length; i++) {
+            COMPANIES[i] = "Partner Consulting " + i;
+        }
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        int records = (args.length > 0) ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        // ==========================================
+        // 1. Part 4's pool example with a dictionary
+        // ==========================================
+        System.out.println("--- 1. Pool vs heap, now for our own values ---");
+        StringDictionary dictionary = new StringDictionary(4, 64);
+        String s1 = "Java";
+        String s3 = new String("Java");
+        System.out.println("s1 == s3: " + (s1 == s3) + " | code(s1) = " + dictionary.encode(s1)
+                + ", code(s3) = " + dictionary.encode(s3) + " | canonical(s3) == s1: " + (dictionary.canonical(s3) == s1));
+        for (String role : new String[] {"Dev", "QA", "Manager", "Analyst"}) {
+            System.out.print(role + " -> " + dictionary.encode(new String(role)) + "  ");
+        }
+        System.out.println("\nDictionary full (" + dictionary.size() + " codes): " + dictionary.isFull());
+        String analyst = new String("Analyst");
+        System.out.println("No code for 'Analyst', but canonical() still shares one instance: "
+                + (dictionary.canonical(analyst) == dictionary.canonical(new String("Analyst"))));
+
+        // ==========================================
+        // 2. The overflow table lets go of unused values
+        // ==========================================
+        System.out.println("\n--- 2. Weak intern table ---");
+        WeakInterner interner = new WeakInterner(1 << 16);
+        String[] held = new String[20_000];
+        for (int i = 0; i < held.length; i++) {
+            held[i] = interner.intern("Client " + i);
+        }
+        System.out.println("Interned " + held.length + " values into " + interner.capacity()
+                + " slots, still referenced: " + interner.liveCount() + " (the rest lost their slot to a collision)");
+        held = null;
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        System.out.println("After dropping them and a GC, still referenced: " + interner.liveCount()
+                + " (String.intern() would have kept all " + 20_000 + ")");
+
+        // ==========================================
+        // 3. Concurrent encoding
+        // ==========================================
+        System.out.println("\n--- 3. Four threads encoding the same values in different orders ---");
+        checkConcurrentEncoding();
+        System.out.println(">> SUCCESS: every thread got the same code for every value, codes are 0.." + (FIRST_NAMES.length * LAST_NAMES.length - 1) + ".");
+
+        // ==========================================
+        // 4. Heap per record
+        // ==========================================
+        System.out.println("\n--- 4. Heap per record (" + String.format("%,d", records) + " employees, "
+                + FIRST_NAMES.length * LAST_NAMES.length + " names, " + ROLES.length + " roles, " + COMPANIES.length + " companies) ---");
+        long before = usedHeap();
+        EmployeeRecord[] raw = buildRecords(records);
+        long rawBytes = usedHeap() - before;
+
+        StringDictionary names = new StringDictionary(1 << 20, 1 << 16);
+        StringDictionary roles = new StringDictionary(1 << 10, 1 << 10);
+        StringDictionary companies = new StringDictionary(1 << 16, 1 << 10);
+        before = usedHeap();
+        long start = System.nanoTime();
+        CodedEmployee[] coded = new CodedEmployee[records];
+        IntStream.range(0, records).parallel().forEach(i -> coded[i] = CodedEmployee.encode(raw[i], names, roles, companies));
+        long encodeNanos = System.nanoTime() - start;
+        long codedBytes = usedHeap() - before;
+
+        // Canonical instances come from the dictionaries, so only the record objects are new here
+        before = usedHeap();
+        EmployeeRecord[] shared = new EmployeeRecord[records];
+        for (int i = 0; i < records; i++) {
+            EmployeeRecord r = raw[i];
+            shared[i] = new EmployeeRecord(r.id, names.canonical(r.name), roles.canonical(r.role), companies.canonical(r.company));
+        }
+        long sharedBytes = usedHeap() - before;
+
+        checkDecoding(raw, coded, shared, names, roles, companies);
+        System.out.printf("String per field:      %6.1f bytes/record%n", (double) rawBytes / records);
+        System.out.printf("Shared (interned) refs: %5.1f bytes/record%n", (double) sharedBytes / records);
+        System.out.printf("int codes:             %6.1f bytes/record (dictionaries included, %,d + %d + %d codes)%n",
+                (double) codedBytes / records, names.size(), roles.size(), companies.size());
+        System.out.printf("Parallel encoding: %.0f ns/record%n", (double) encodeNanos / records);
+        System.out.println(">> SUCCESS: all three versions decode to the same values.");
+
+        // ==========================================
+        // 5. Equality and grouping
+        // ==========================================
+        System.out.println("\n--- 5. Equality checks, best of " + rounds + " ---");
+        String query = FIRST_NAMES[7] + " " + LAST_NAMES[3]; // a new String, like a search box would give us
+        int queryCode = names.code(query);
+        report("name.equals(query), own Strings", records, rounds, () -> {
+            long hits = 0;
+            for (EmployeeRecord r : raw) {
+                if (r.name.equals(query)) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+        String canonicalQuery = names.canonical(query);
+        report("name.equals(query), shared", records, rounds, () -> {
+            long hits = 0;
+            for (EmployeeRecord r : shared) {
+                if (r.name.equals(canonicalQuery)) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+        report("nameCode == queryCode", records, rounds, () -> {
+            long hits = 0;
+            for (CodedEmployee r : coded) {
+                if (r.nameCode == queryCode) {
+                    hits++;
+                }
+            }
+            return hits;
+        });
+
+        // Neighbours mostly work for the same few companies: most comparisons are equal,
+        // which is the slow case for equals() (every character is compared)
+        report("same company as previous, own", records, rounds, () -> {
+            long same = 0;
+            for (int i = 1; i < raw.length; i++) {
+                if (raw[i].company.equals(raw[i - 1].company)) {
+                    same++;
+                }
+            }
+            return same;
+        });
+        report("same company as previous, shared", records, rounds, () -> {
+            long same = 0;
+            for (int i = 1; i < shared.length; i++) {
+                if (shared[i].company.equals(shared[i - 1].company)) {
+                    same++;
+                }
+            }
+            return same;
+        });
+        report("same company as previous, codes", records, rounds, () -> {
+            long same = 0;
+            for (int i = 1; i < coded.length; i++) {
+                if (coded[i].companyCode == coded[i - 1].companyCode) {
+                    same++;
+                }
+            }
+            return same;
+        });
+
+        report("employees per role, HashMap", records, rounds, () -> {
+            Map<String, int[]> counts = new HashMap<>();
+            for (EmployeeRecord r : raw) {
+                counts.computeIfAbsent(r.role, k -> new int[1])[0]++;
+            }
+            return counts.get("Dev")[0];
+        });
+        report("employees per role, int[] by code", records, rounds, () -> {
+            int[] counts = new int[roles.size()];
+            for (CodedEmployee r : coded) {
+                counts[r.roleCode]++;
+            }
+            return counts[roles.code("Dev")];
+        });
+    }
+
+    private static EmployeeRecord[] buildRecords(int records) {
+        Random random = new Random(21);
+        EmployeeRecord[] result = new EmployeeRecord[records];
+        for (int i = 0; i < records; i++) {
+            // New String objects per record, as a parser or JDBC driver would create them
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String role = new String(ROLES[Math.min(random.nextInt(ROLES.length * 2), ROLES.length - 1)]); // mostly the last ones
+            String company = new String(COMPANIES[random.nextInt(random.nextInt(COMPANIES.length) + 1)]); // skewed to the first ones
+            result[i] = new EmployeeRecord(1000 + i, name, role, company);
+        }
+        return result;
+    }
+
+    private static void checkConcurrentEncoding() throws InterruptedException {
+        String[] values = new String[FIRST_NAMES.length * LAST_NAMES.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = FIRST_NAMES[i / LAST_NAMES.length] + " " + LAST_NAMES[i % LAST_NAMES.length];
+        }
+        StringDictionary dictionary = new StringDictionary(values.length, 16);
+        int[][] codes = new int[4][values.length];
+        Thread[] threads = new Thread[codes.length];
+        for (int t = 0; t < threads.length; t++) {
+            int[] mine = codes[t];
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                // Each thread walks the values in its own random order, using fresh String copies
+                int[] order = IntStream.range(0, values.length).toArray();
+                Random random = new Random(seed);
+                for (int i = order.length - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                }
+                for (int i : order) {
+                    mine[i] = dictionary.encode(new String(values[i]));
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Integer> distinct = new HashSet<>();
+        for (int i = 0; i < values.length; i++) {
+            for (int[] threadCodes : codes) {
+                if (threadCodes[i] != codes[0][i]) {
+                    throw new IllegalStateException("Threads disagree on the code of " + values[i]);
+                }
+            }
+            if (!dictionary.decode(codes[0][i]).equals(values[i]) || !distinct.add(codes[0][i])) {
+                throw new IllegalStateException("Bad code " + codes[0][i] + " for " + values[i]);
+            }
+        }
+        if (dictionary.size() != values.length || !distinct.contains(0) || !distinct.contains(values.length - 1)) {
+            throw new IllegalStateException("Codes are not dense: size " + dictionary.size());
+        }
+    }
+
+    private static void checkDecoding(EmployeeRecord[] raw, CodedEmployee[] coded, EmployeeRecord[] shared,
+                                      StringDictionary names, StringDictionary roles, StringDictionary companies) {
+        for (int i = 0; i < raw.length; i++) {
+            EmployeeRecord r = raw[i];
+            CodedEmployee c = coded[i];
+            EmployeeRecord s = shared[i];
+            if (c.id != r.id || !names.decode(c.nameCode).equals(r.name) || !roles.decode(c.roleCode).equals(r.role)
+                    || !companies.decode(c.companyCode).equals(r.company)
+                    || s.name != names.decode(c.nameCode) || s.role != roles.decode(c.roleCode)
+                    || s.company != companies.decode(c.companyCode)) { // == on purpose: shared instances
+                throw new IllegalStateException("Record " + i + " does not decode to its original values");
+            }
+        }
+    }
+
+    private static void report(String label, int records, int rounds, Pass pass) {
+        for (int i = 0; i < 3; i++) { // warmup: let the JIT compile the loop first
+            sink += pass.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            sink += pass.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        // Printing the sink keeps the JIT from removing a loop whose result is never used
+        System.out.printf("  %-36s %6.2f ns/record  %,14.0f records/s  (check %d)%n",
+                label, (double) best / records, records / (best / 1_000_000_000.0), sink & 0xff);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,513 @@
+/**
+ * Part 22: Payment Pipeline (Part 5's PaymentChannel at millions of payments)
+ * Concepts Covered:
+ * 1. Check-then-act: 'if (getBalance() >= amount) deductBalance(amount)' is only safe if nobody else
+ *    touches the balance in between. deductBalance now checks and updates in one call and returns the result.
+ * 2. Sharding / single writer: every account belongs to exactly one worker thread (account % workers),
+ *    so balances are never shared between threads and need no locks.
+ * 3. Queues and backpressure: producers hand payments over through a bounded queue per worker and
+ *    wait when it is full, instead of running out of memory.
+ * 4. Batching: a worker drains up to maxBatch payments at a time, groups them by account and updates
+ *    each balance once per batch (PaymentChannel.deductBatch), with the same results as one by one.
+ * 5. Measuring: throughput, and latency percentiles (p50/p99/p99.9) at full speed and at a fixed rate.
+ *
+ * Compile and run together with Part 5 (and Log.java next to them):
+ *   javac Part5.java Part22.java
+ *   java Part22 [payments] [accounts] [maxWorkers]
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// ==========================================
+// ONE PAYMENT
+// ==========================================
+class PaymentRequest {
+
+    static final int PENDING = 0;
+    static final int APPROVED = 1;
+    static final int INSUFFICIENT_FUNDS = 2;
+    static final int DECLINED_FRAUD = 3; // never sent to a worker: settled by reject() (a fraud check in front, see Part 23)
+    static final int FAILED = 4;         // the worker hit an error on this payment's account; reported, not retried
+
+    final long requestId;
+    final int account;       // index into the pipeline's channel array
+    final double amount;
+    final long createdNanos; // System.nanoTime() when the payment was requested
+
+    // Written by the worker before the listener is called
+    int status = PENDING;
+    long completedNanos;
+
+    PaymentRequest(long requestId, int account, double amount, long createdNanos) {
+        this.requestId = requestId;
+        this.account = account;
+        this.amount = amount;
+        this.createdNanos = createdNanos;
+    }
+
+    boolean isApproved() {
+        return status == APPROVED;
+    }
+
+    static String statusName(int status) {
+        switch (status) {
+            case APPROVED:
+                return "APPROVED";
+            case INSUFFICIENT_FUNDS:
+                return "INSUFFICIENT_FUNDS";
+            case DECLINED_FRAUD:
+                return "DECLINED_FRAUD";
+            case FAILED:
+                return "FAILED";
+            default:
+                return "PENDING";
+        }
+    }
+}
+
+// ==========================================
+// SHARDED, SINGLE-WRITER PIPELINE
+// ==========================================
+class PaymentPipeline implements AutoCloseable {
+
+    interface PaymentListener {
+        // Called on the worker thread that owns the account, once the balance has been updated
+        // (or on the caller's thread for a payment settled by reject())
+        void onComplete(PaymentRequest request);
+    }
+
+    private static final PaymentRequest STOP = new PaymentRequest(-1, -1, 0, 0);
+    private static final Log LOG = Log.get(PaymentPipeline.class);
+
+    private final PaymentChannel[] accounts;
+    private final PaymentListener listener;
+    private final List<ArrayBlockingQueue<PaymentRequest>> queues;
+    private final int shards; // one queue and one worker thread per shard
+    private final Thread[] threads;
+    private volatile boolean closed;
+
+    // The pipeline owns the channels from now on: nothing else may change their balances until close()
+    public PaymentPipeline(PaymentChannel[] accounts, int workers, int queueCapacity, int maxBatch, PaymentListener listener) {
+        if (workers <= 0 || queueCapacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("workers, queueCapacity and maxBatch must be positive");
+        }
+        this.accounts = accounts;
+        this.listener = listener;
+        this.queues = new ArrayList<>(workers);
+        this.shards = workers;
+        this.threads = new Thread[workers];
+        for (int w = 0; w < workers; w++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+            threads[w] = new Thread(new Worker(w, maxBatch), "payment-worker-" + w);
+            threads[w].start();
+        }
+    }
+
+    // Blocks while the owning worker's queue is full (backpressure)
+    public void submit(PaymentRequest request) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        if (request.account < 0 || request.account >= accounts.length) {
+            throw new IllegalArgumentException("Unknown account: " + request.account);
+        }
+        if (!(request.amount > 0)) { // also rejects NaN
+            throw new IllegalArgumentException("Payment amount must be positive: " + request.amount);
+        }
+        queues.get(request.account % shards).put(request);
+    }
+
+    // For a check in front of the pipeline: the payment is settled with 'status' without reaching
+    // a worker (its balance is untouched) and reported to the listener right away, on this thread
+    public void reject(PaymentRequest request, int status) {
+        if (status == PaymentRequest.PENDING || status == PaymentRequest.APPROVED) {
+            throw new IllegalArgumentException("Not a rejection: " + PaymentRequest.statusName(status));
+        }
+        request.status = status;
+        request.completedNanos = System.nanoTime();
+        listener.onComplete(request);
+    }
+
+    public int getWorkerCount() {
+        return threads.length;
+    }
+
+    // Finishes every payment submitted so far, then stops the workers.
+    // Call it after the last submit() has returned. An interrupt doesn't cut the shutdown short
+    // (that would leave workers running); it is restored once every worker has finished.
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        for (ArrayBlockingQueue<PaymentRequest> queue : queues) {
+            while (true) {
+                try {
+                    queue.put(STOP); // behind everything already queued
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final int worker;
+        private final int maxBatch;
+        private final List<PaymentRequest> batch;
+
+        // Grouping a batch by account, without allocating: a linked list per account through
+        // 'next', kept in arrival order so every account sees its payments in submission order
+        private final int[] first;   // by local account: first batch index, -1 if not in this batch
+        private final int[] last;    // by local account: last batch index so far
+        private final int[] next;    // by batch index: next index for the same account, -1 at the end
+        private final int[] touched; // local accounts in this batch
+        private final double[] amounts;
+        private final boolean[] approved;
+
+        Worker(int worker, int maxBatch) {
+            this.worker = worker;
+            this.maxBatch = maxBatch;
+            this.batch = new ArrayList<>(maxBatch);
+            int localAccounts = (accounts.length - worker + shards - 1) / shards;
+            this.first = new int[localAccounts];
+            this.last = new int[localAccounts];
+            Arrays.fill(first, -1);
+            this.next = new int[maxBatch];
+            this.touched = new int[maxBatch];
+            this.amounts = new double[maxBatch];
+            this.approved = new boolean[maxBatch];
+        }
+
+        @Override
+        public void run() {
+            ArrayBlockingQueue<PaymentRequest> queue = queues.get(worker);
+            try {
+                while (true) {
+                    batch.add(queue.take()); // sleep until there is work
+                    queue.drainTo(batch, maxBatch - 1); // then take whatever else is waiting
+                    // STOP is always the last request in the queue, so it can only end a batch
+                    boolean stop = batch.get(batch.size() - 1) == STOP;
+                    if (stop) {
+                        batch.remove(batch.size() - 1);
+                    }
+                    try {
+                        process();
+                    } catch (RuntimeException e) {
+                        failBatch(e);
+                    }
+                    batch.clear();
+                    if (stop) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Last resort if process() itself broke: whatever wasn't settled is reported as FAILED
+        private void failBatch(RuntimeException e) {
+            LOG.error("Payment batch failed on worker " + worker, e);
+            Arrays.fill(first, -1);
+            long now = System.nanoTime();
+            for (PaymentRequest request : batch) {
+                if (request.status == PaymentRequest.PENDING) {
+                    request.status = PaymentRequest.FAILED;
+                    request.completedNanos = now;
+                    try {
+                        listener.onComplete(request);
+                    } catch (RuntimeException ignored) {
+                        // Already logged once for this batch
+                    }
+                }
+            }
+        }
+
+        private void process() {
+            int n = batch.size();
+            int touchedCount = 0;
+            for (int i = 0; i < n; i++) {
+                int local = batch.get(i).account / shards;
+                next[i] = -1;
+                if (first[local] < 0) {
+                    first[local] = i;
+                    touched[touchedCount++] = local;
+                } else {
+                    next[last[local]] = i;
+                }
+                last[local] = i;
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                int local = touched[t];
+                int account = local * shards + worker;
+                try {
+                    int count = 0;
+                    for (int i = first[local]; i >= 0; i = next[i]) {
+                        amounts[count++] = batch.get(i).amount;
+                    }
+                    accounts[account].deductBatch(amounts, approved, count);
+                    count = 0;
+                    for (int i = first[local]; i >= 0; i = next[i]) {
+                        batch.get(i).status = approved[count++] ? PaymentRequest.APPROVED : PaymentRequest.INSUFFICIENT_FUNDS;
+                    }
+                } catch (RuntimeException e) {
+                    // Only this account's payments fail; the shard's other accounts carry on
+                    LOG.error("Payments on account " + account + " failed", e);
+                    for (int i = first[local]; i >= 0; i = next[i]) {
+                        batch.get(i).status = PaymentRequest.FAILED;
+                    }
+                } finally {
+                    first[local] = -1;
+                }
+            }
+
+            long now = System.nanoTime(); // one clock read per batch
+            for (int i = 0; i < n; i++) {
+                PaymentRequest request = batch.get(i);
+                request.completedNanos = now;
+                try {
+                    listener.onComplete(request);
+                } catch (RuntimeException e) {
+                    // The caller's callback must not take the worker (and every account it owns) down
+                    LOG.error("Payment listener failed for request " + request.requestId, e);
+                }
+            }
+        }
+    }
+}
+
+public class Part22 {
+
+    public static void main(String[] args) throws InterruptedException {
+        int payments = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+        int accountCount = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+        int maxWorkers = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+
+        // ==========================================
+        // 1. Part 5's card and wallet through the pipeline
+        // ==========================================
+        System.out.println("--- 1. Part 5's channels ---");
+        PaymentChannel[] channels = {new CreditCard("TXN_101", 500.00), new DigitalWallet("TXN_102", 200.00, "Alice")};
+        ConcurrentLinkedQueue<PaymentRequest> done = new ConcurrentLinkedQueue<>();
+        PaymentPipeline demo = new PaymentPipeline(channels, 2, 16, 8, done::add);
+        double[][] demoPayments = {{0, 100}, {1, 45}, {0, 450}, {1, 155}, {1, 0.01}, {0, 400}};
+        for (int i = 0; i < demoPayments.length; i++) {
+            demo.submit(new PaymentRequest(i, (int) demoPayments[i][0], demoPayments[i][1], System.nanoTime()));
+        }
+        demo.close();
+        PaymentRequest[] results = done.toArray(new PaymentRequest[0]);
+        Arrays.sort(results, (x, y) -> Long.compare(x.requestId, y.requestId));
+        Log.flush(); // the channels' own logs are asynchronous: print them before the results
+        for (PaymentRequest r : results) {
+            System.out.printf("Payment %d: %-12s %7.2f -> %s%n", r.requestId,
+                    r.account == 0 ? "credit card" : "wallet", r.amount, PaymentRequest.statusName(r.status));
+        }
+        System.out.println("Balances: card " + channels[0].getBalance() + " | wallet " + channels[1].getBalance());
+
+        // Insufficient-funds warnings would flood the output from here on
+        Log.setLevel(Log.OFF);
+
+        // ==========================================
+        // 2. Same results as one payment at a time
+        // ==========================================
+        System.out.println("\n--- 2. Pipeline vs processPayment one by one ---");
+        checkAgainstSequential(1_000_000, 10_000, maxWorkers);
+        System.out.println(">> SUCCESS: same approvals and the same final balances for every account.");
+        checkFailuresStayLocal();
+        System.out.println(">> SUCCESS: a failing account or listener only fails its own payments; the workers keep going.");
+
+        // ==========================================
+        // 3. Throughput and latency
+        // ==========================================
+        System.out.println("\n--- 3. " + String.format("%,d", payments) + " payments over "
+                + String.format("%,d", accountCount) + " accounts ---");
+        Random random = new Random(22);
+        int[] accountOf = new int[payments];
+        double[] amountOf = new double[payments];
+        for (int i = 0; i < payments; i++) {
+            accountOf[i] = random.nextInt(accountCount);
+            amountOf[i] = (1 + random.nextInt(200_000)) / 100.0; // 0.01 .. 2,000.00
+        }
+
+        // Baseline: Part 5's synchronous call, one payment at a time on the caller's thread
+        PaymentChannel[] direct = openAccounts(accountCount);
+        for (int i = 0; i < Math.min(payments, 1_000_000); i++) { // warmup
+            direct[accountOf[i]].processPayment(0.01);
+        }
+        long start = System.nanoTime();
+        long approved = 0;
+        for (int i = 0; i < payments; i++) {
+            if (direct[accountOf[i]].processPayment(amountOf[i])) {
+                approved++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-28s %,12.0f payments/s  (%.1f%% approved, no queue: latency = call time)%n",
+                "processPayment, 1 thread", payments / (elapsed / 1e9), 100.0 * approved / payments);
+
+        System.out.println("  Full speed (the producer submits as fast as the queues accept):");
+        double best = 0;
+        for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+            best = Math.max(best, run(workers, accountCount, accountOf, amountOf, 0));
+        }
+        // Latency at full speed is mostly time spent waiting in a full queue; at a fixed rate
+        // below capacity it shows what a payment really costs
+        double rate = Math.floor(best / 2 / 1000) * 1000;
+        System.out.printf("  Fixed rate of %,.0f payments/s (half the best throughput):%n", rate);
+        for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+            run(workers, accountCount, accountOf, amountOf, rate);
+        }
+    }
+
+    // rate = payments per second, 0 = as fast as possible. Returns the measured throughput.
+    private static double run(int workers, int accountCount, int[] accountOf, double[] amountOf, double rate)
+            throws InterruptedException {
+        int payments = accountOf.length;
+        long[] latency = new long[payments];
+        byte[] status = new byte[payments];
+        PaymentPipeline pipeline = new PaymentPipeline(openAccounts(accountCount), workers, 8192, 256, r -> {
+            latency[(int) r.requestId] = r.completedNanos - r.createdNanos;
+            status[(int) r.requestId] = (byte) r.status;
+        });
+
+        long start = System.nanoTime();
+        double intervalNanos = (rate > 0) ? 1e9 / rate : 0;
+        for (int i = 0; i < payments; i++) {
+            long created;
+            if (rate > 0) {
+                // Latency counts from when the payment was due, not from when we got round to
+                // sending it, so a stalled pipeline can't hide its own delays
+                created = start + (long) (i * intervalNanos);
+                while (System.nanoTime() < created) {
+                    Thread.yield(); // not a busy spin: on a machine with few cores the workers need that CPU
+                }
+            } else {
+                created = System.nanoTime();
+            }
+            pipeline.submit(new PaymentRequest(i, accountOf[i], amountOf[i], created));
+        }
+        pipeline.close(); // waits for the last payment
+        long elapsed = System.nanoTime() - start;
+
+        int approved = 0;
+        for (byte s : status) {
+            if (s == PaymentRequest.APPROVED) {
+                approved++;
+            } else if (s != PaymentRequest.INSUFFICIENT_FUNDS) {
+                throw new IllegalStateException("A payment never completed");
+            }
+        }
+        Arrays.sort(latency);
+        double throughput = payments / (elapsed / 1e9);
+        System.out.printf("    %d worker(s): %,12.0f payments/s  (%.1f%% approved)  latency p50 %s  p99 %s  p99.9 %s  max %s%n",
+                workers, throughput, 100.0 * approved / payments, micros(latency[payments / 2]),
+                micros(latency[(int) (payments * 0.99)]), micros(latency[(int) (payments * 0.999)]), micros(latency[payments - 1]));
+        return throughput;
+    }
+
+    // Account 0's channel throws and the listener throws for payment 1: everything else still goes through
+    private static void checkFailuresStayLocal() {
+        PaymentChannel[] channels = openAccounts(8);
+        channels[0] = new CreditCard("TXN_BROKEN", 1_000) {
+            @Override
+            public int deductBatch(double[] amounts, boolean[] approved, int count) {
+                throw new IllegalStateException("card network down");
+            }
+        };
+        PaymentRequest[] requests = new PaymentRequest[64];
+        ConcurrentLinkedQueue<PaymentRequest> reported = new ConcurrentLinkedQueue<>();
+        PaymentPipeline pipeline = new PaymentPipeline(channels, 2, 16, 8, r -> {
+            reported.add(r);
+            if (r.requestId == 1) {
+                throw new IllegalStateException("listener bug");
+            }
+        });
+        try {
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new PaymentRequest(i, i % channels.length, 1, 0);
+                pipeline.submit(requests[i]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pipeline.close();
+        }
+        for (PaymentRequest r : requests) {
+            int expected = (r.account == 0) ? PaymentRequest.FAILED : PaymentRequest.APPROVED;
+            if (r.status != expected) {
+                throw new IllegalStateException("Payment " + r.requestId + ": " + PaymentRequest.statusName(r.status));
+            }
+        }
+        if (reported.size() != requests.length) {
+            throw new IllegalStateException(reported.size() + " of " + requests.length + " payments reported");
+        }
+    }
+
+    private static void checkAgainstSequential(int payments, int accountCount, int workers) throws InterruptedException {
+        Random random = new Random(5);
+        PaymentRequest[] requests = new PaymentRequest[payments];
+        for (int i = 0; i < payments; i++) {
+            // Small balances (see openAccounts) and large amounts: plenty of refusals to compare
+            requests[i] = new PaymentRequest(i, random.nextInt(accountCount), (1 + random.nextInt(500_000)) / 100.0, 0);
+        }
+        PaymentChannel[] expected = openAccounts(accountCount);
+        boolean[] expectedApproved = new boolean[payments];
+        for (int i = 0; i < payments; i++) {
+            expectedApproved[i] = expected[requests[i].account].processPayment(requests[i].amount);
+        }
+
+        PaymentChannel[] actual = openAccounts(accountCount);
+        PaymentPipeline pipeline = new PaymentPipeline(actual, workers, 1024, 64, r -> { });
+        for (PaymentRequest r : requests) {
+            pipeline.submit(r);
+        }
+        pipeline.close();
+        for (int i = 0; i < payments; i++) {
+            if (requests[i].isApproved() != expectedApproved[i]) {
+                throw new IllegalStateException("Payment " + i + ": " + PaymentRequest.statusName(requests[i].status));
+            }
+        }
+        for (int a = 0; a < accountCount; a++) {
+            if (actual[a].getBalance() != expected[a].getBalance()) { // exact: same additions in the same order
+                throw new IllegalStateException("Account " + a + ": " + actual[a].getBalance() + " vs " + expected[a].getBalance());
+            }
+        }
+    }
+
+    // Half credit cards, half wallets; one account in ten is nearly empty
+    private static PaymentChannel[] openAccounts(int count) {
+        Random random = new Random(count);
+        PaymentChannel[] accounts = new PaymentChannel[count];
+        for (int i = 0; i < count; i++) {
+            double balance = (i % 10 == 0) ? random.nextInt(500_000) / 100.0 : 100_000 + random.nextInt(900_000);
+            accounts[i] = (i % 2 == 0)
+                    ? new CreditCard("TXN_" + i, balance)
+                    : new DigitalWallet("TXN_" + i, balance, "Owner " + i);
+        }
+        return accounts;
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%,.1f us", nanos / 1000.0);
+    }
+}
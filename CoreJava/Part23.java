@@ -0,0 +1,579 @@
+/**
+ * Part 23: Fraud Scoring (Part 5's SecurityProtocol as a risk score)
+ * Concepts Covered:
+ * 1. scanForFraud returns a score (0..MAX_RISK) instead of printing, so it can gate a payment.
+ * 2. Composable rules: velocity per account, amount outliers, device/IP shared by many accounts,
+ *    and each channel's own scanForFraud, added up into one score.
+ * 3. Sliding windows in primitive arrays: counts per time bucket (e.g. 6 x 10 s for one minute),
+ *    cleared as time moves on, instead of a list of timestamps per account.
+ * 4. Parallel rules: every rule owns its state and scores the whole batch on its own thread, so the
+ *    rules run at the same time without sharing anything (the same single-writer idea as Part 22).
+ * 5. Measuring: nanoseconds per payment, per rule and end to end in front of Part 22's pipeline.
+ *
+ * Compile and run together with Parts 5 and 22 (and Log.java next to them):
+ *   javac Part5.java Part22.java Part23.java
+ *   java Part23 [payments] [accounts] [workers]
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// ==========================================
+// A BATCH OF PAYMENTS, ONE ARRAY PER FIELD
+// ==========================================
+class PaymentBatch {
+
+    final int[] accounts;
+    final double[] amounts;
+    final long[] times;   // epoch millis, non-decreasing (or nearly) from batch to batch
+    final int[] devices;  // device fingerprint, already turned into an int (e.g. by Part 21's dictionary)
+    final int[] ips;      // IPv4 address as an int
+    private int size;
+
+    PaymentBatch(int capacity) {
+        accounts = new int[capacity];
+        amounts = new double[capacity];
+        times = new long[capacity];
+        devices = new int[capacity];
+        ips = new int[capacity];
+    }
+
+    void add(int account, double amount, long timeMillis, int device, int ip) {
+        accounts[size] = account;
+        amounts[size] = amount;
+        times[size] = timeMillis;
+        devices[size] = device;
+        ips[size] = ip;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == accounts.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+}
+
+// ==========================================
+// SLIDING WINDOW COUNTS
+// ==========================================
+// Per key: 'buckets' ints, one per time slice, plus the newest slice seen. The window is the
+// newest slice and the ones before it; older slices are zeroed as the key's time moves forward.
+class BucketedCounter {
+
+    private final int buckets;
+    private final long bucketMillis;
+    private final int[] counts;   // key * buckets + (slice % buckets)
+    private final long[] newest;  // per key
+
+    BucketedCounter(int keys, int buckets, long bucketMillis) {
+        this.buckets = buckets;
+        this.bucketMillis = bucketMillis;
+        this.counts = new int[keys * buckets];
+        this.newest = new long[keys];
+    }
+
+    // Adds delta at the given time and returns the key's total over the window
+    int add(int key, long timeMillis, int delta) {
+        long slice = timeMillis / bucketMillis;
+        int base = key * buckets;
+        long last = newest[key];
+        if (slice > last) {
+            // Slide forward, zeroing the slices that left the window (at most all of them)
+            for (long s = Math.max(last + 1, slice - buckets + 1); s <= slice; s++) {
+                counts[base + (int) (s % buckets)] = 0;
+            }
+            newest[key] = slice;
+        } else if (slice <= last - buckets) {
+            delta = 0; // older than the whole window: nothing to count it in
+        }
+        counts[base + (int) (slice % buckets)] += delta;
+        int total = 0;
+        for (int i = base; i < base + buckets; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+}
+
+// ==========================================
+// RULES
+// ==========================================
+interface FraudRule {
+
+    String name();
+
+    // Scores payments [0, batch.size()) in order into scores[], updating the rule's own state.
+    // A rule is only ever used by one thread at a time.
+    void score(PaymentBatch batch, int[] scores);
+}
+
+// More than 'limit' payments from one account inside the window
+class VelocityRule implements FraudRule {
+
+    private final BucketedCounter payments;
+    private final int limit;
+    private final int pointsPerExtra;
+
+    VelocityRule(int accounts, int buckets, long bucketMillis, int limit, int pointsPerExtra) {
+        this.payments = new BucketedCounter(accounts, buckets, bucketMillis);
+        this.limit = limit;
+        this.pointsPerExtra = pointsPerExtra;
+    }
+
+    @Override
+    public String name() {
+        return "velocity";
+    }
+
+    @Override
+    public void score(PaymentBatch batch, int[] scores) {
+        for (int i = 0; i < batch.size(); i++) {
+            int count = payments.add(batch.accounts[i], batch.times[i], 1);
+            scores[i] = (count <= limit) ? 0 : Math.min(SecurityProtocol.MAX_RISK, (count - limit) * pointsPerExtra);
+        }
+    }
+}
+
+// Amount far above what the account usually pays: distance from a moving average in standard deviations
+class AmountOutlierRule implements FraudRule {
+
+    private static final double WEIGHT = 0.1;      // of the newest payment in the moving average
+    private static final int MIN_HISTORY = 5;      // payments seen before the account is judged
+    private static final double THRESHOLD = 3.0;   // standard deviations
+
+    private final double[] mean;
+    private final double[] variance;
+    private final int[] seen;
+    private final int pointsPerDeviation;
+
+    AmountOutlierRule(int accounts, int pointsPerDeviation) {
+        this.mean = new double[accounts];
+        this.variance = new double[accounts];
+        this.seen = new int[accounts];
+        this.pointsPerDeviation = pointsPerDeviation;
+    }
+
+    @Override
+    public String name() {
+        return "amount";
+    }
+
+    @Override
+    public void score(PaymentBatch batch, int[] scores) {
+        for (int i = 0; i < batch.size(); i++) {
+            int a = batch.accounts[i];
+            double amount = batch.amounts[i];
+            double diff = amount - mean[a];
+            int score = 0;
+            if (seen[a] >= MIN_HISTORY) {
+                // Floor on the deviation: an account that always pays the same amount isn't
+                // flagged for a payment a few rupees higher
+                double deviation = Math.max(Math.sqrt(variance[a]), 0.1 * mean[a] + 1);
+                double z = diff / deviation;
+                if (z > THRESHOLD) {
+                    score = (int) Math.min(SecurityProtocol.MAX_RISK, (z - THRESHOLD) * pointsPerDeviation);
+                }
+            }
+            scores[i] = score;
+            // Exponentially weighted mean and variance, updated in place
+            if (seen[a] == 0) {
+                mean[a] = amount;
+            } else {
+                double increment = WEIGHT * diff;
+                mean[a] += increment;
+                variance[a] = (1 - WEIGHT) * (variance[a] + diff * increment);
+            }
+            if (seen[a] < MIN_HISTORY) {
+                seen[a]++;
+            }
+        }
+    }
+}
+
+// A device or IP address that keeps switching between accounts inside the window.
+// Keys are hashed into a fixed number of slots; two keys sharing a slot can only raise the
+// score, so size 'slots' well above the number of active devices/IPs.
+class SharedKeyRule implements FraudRule {
+
+    static final boolean DEVICE = true;
+    static final boolean IP = false;
+
+    private final boolean device;
+    private final BucketedCounter switches;
+    private final int[] lastAccount;
+    private final int mask;
+    private final int limit;
+    private final int pointsPerExtra;
+
+    SharedKeyRule(boolean device, int slots, int buckets, long bucketMillis, int limit, int pointsPerExtra) {
+        int capacity = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.device = device;
+        this.switches = new BucketedCounter(capacity, buckets, bucketMillis);
+        this.lastAccount = new int[capacity];
+        Arrays.fill(lastAccount, -1);
+        this.mask = capacity - 1;
+        this.limit = limit;
+        this.pointsPerExtra = pointsPerExtra;
+    }
+
+    @Override
+    public String name() {
+        return device ? "device" : "ip";
+    }
+
+    @Override
+    public void score(PaymentBatch batch, int[] scores) {
+        int[] keys = device ? batch.devices : batch.ips;
+        for (int i = 0; i < batch.size(); i++) {
+            int h = keys[i] * 0x9E3779B9;
+            int slot = (h ^ (h >>> 16)) & mask;
+            int account = batch.accounts[i];
+            int switched = (lastAccount[slot] >= 0 && lastAccount[slot] != account) ? 1 : 0;
+            lastAccount[slot] = account;
+            int count = switches.add(slot, batch.times[i], switched);
+            scores[i] = (count <= limit) ? 0 : Math.min(SecurityProtocol.MAX_RISK, (count - limit) * pointsPerExtra);
+        }
+    }
+}
+
+// Each channel's own check from Part 5 (credit limit share for cards, transfer limit for wallets)
+class ChannelRule implements FraudRule {
+
+    private final PaymentChannel[] channels;
+
+    ChannelRule(PaymentChannel[] channels) {
+        this.channels = channels;
+    }
+
+    @Override
+    public String name() {
+        return "channel";
+    }
+
+    @Override
+    public void score(PaymentBatch batch, int[] scores) {
+        for (int i = 0; i < batch.size(); i++) {
+            scores[i] = channels[batch.accounts[i]].scanForFraud(batch.amounts[i]);
+        }
+    }
+}
+
+// ==========================================
+// COMBINING THE RULES
+// ==========================================
+// Score = sum of the rule scores, capped at MAX_RISK. Batches must come from one thread at a time.
+class FraudScorer {
+
+    private final FraudRule[] rules;
+    private final int[][] ruleScores;
+
+    FraudScorer(int maxBatch, FraudRule... rules) {
+        this.rules = rules;
+        this.ruleScores = new int[rules.length][maxBatch];
+    }
+
+    // The rules one after the other, on the caller's thread
+    void score(PaymentBatch batch, int[] scores) {
+        for (int r = 0; r < rules.length; r++) {
+            rules[r].score(batch, ruleScores[r]);
+        }
+        combine(batch.size(), scores);
+    }
+
+    // One task per rule: each rule still sees the batch in order, so the scores are the same
+    void scoreParallel(PaymentBatch batch, int[] scores, ForkJoinPool pool) {
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[rules.length - 1];
+        for (int r = 0; r < tasks.length; r++) {
+            FraudRule rule = rules[r];
+            int[] out = ruleScores[r];
+            tasks[r] = pool.submit(() -> rule.score(batch, out));
+        }
+        rules[rules.length - 1].score(batch, ruleScores[rules.length - 1]); // the caller does one itself
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        combine(batch.size(), scores);
+    }
+
+    int ruleCount() {
+        return rules.length;
+    }
+
+    String ruleName(int rule) {
+        return rules[rule].name();
+    }
+
+    // Score of one rule for payment i of the last batch
+    int ruleScore(int rule, int i) {
+        return ruleScores[rule][i];
+    }
+
+    private void combine(int count, int[] scores) {
+        for (int i = 0; i < count; i++) {
+            int total = 0;
+            for (int[] rule : ruleScores) {
+                total += rule[i];
+            }
+            scores[i] = Math.min(SecurityProtocol.MAX_RISK, total);
+        }
+    }
+}
+
+public class Part23 {
+
+    private static final int BATCH = 4096;
+    private static final long START = 1_767_225_600_000L; // 2026-01-01 00:00 UTC
+
+    public static void main(String[] args) throws InterruptedException {
+        int payments = (args.length > 0) ? Integer.parseInt(args[0]) : 5_000_000;
+        int accountCount = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+        int workers = (args.length > 2) ? Integer.parseInt(args[2]) : 2;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        // ==========================================
+        // 1. Part 5's channels return a score
+        // ==========================================
+        System.out.println("--- 1. scanForFraud as a score ---");
+        PaymentChannel card = new CreditCard("TXN_101", 500.00);
+        PaymentChannel wallet = new DigitalWallet("TXN_102", 200.00, "Alice");
+        int[] scores = {card.scanForFraud(100), card.scanForFraud(450), wallet.scanForFraud(45), wallet.scanForFraud(15_000)};
+        Log.flush();
+        System.out.println("Card 100: " + scores[0] + " | card 450: " + scores[1] + " | wallet 45: " + scores[2]
+                + " | wallet 15,000: " + scores[3] + " (blocked at " + SecurityProtocol.BLOCK_SCORE + ")");
+
+        // ==========================================
+        // 2. Each rule on a small story
+        // ==========================================
+        System.out.println("\n--- 2. Rules ---");
+        PaymentChannel[] channels = openAccounts(accountCount);
+        FraudScorer scorer = newScorer(accountCount, channels);
+        PaymentBatch batch = new PaymentBatch(BATCH);
+        long t = START;
+        for (int i = 0; i < 6; i++) { // account 7 pays about 300 now and then: normal history
+            batch.add(7, 280 + 10 * i, t += 300_000, 7, 7);
+        }
+        for (int i = 0; i < 8; i++) { // then eight payments in 40 seconds
+            batch.add(7, 300, t += 5_000, 7, 7);
+        }
+        batch.add(7, 9_000, t += 600_000, 7, 7); // ten minutes later, 30 times the usual amount
+        for (int a = 100; a < 106; a++) { // one device and IP used for six accounts in a minute
+            batch.add(a, 50, t += 10_000, 999, 999);
+        }
+        batch.add(10, 900_000, t += 1_000, 10, 10); // almost a whole credit limit at once
+        int[] batchScores = new int[BATCH];
+        scorer.score(batch, batchScores);
+        for (int i = 0; i < batch.size(); i++) {
+            if (batchScores[i] == 0) {
+                continue;
+            }
+            StringBuilder why = new StringBuilder();
+            for (int r = 0; r < scorer.ruleCount(); r++) {
+                if (scorer.ruleScore(r, i) > 0) {
+                    why.append(' ').append(scorer.ruleName(r)).append('=').append(scorer.ruleScore(r, i));
+                }
+            }
+            System.out.printf("Payment %2d: account %3d, %,10.2f at +%3ds -> risk %3d%s |%s%n", i, batch.accounts[i],
+                    batch.amounts[i], (batch.times[i] - START) / 1000, batchScores[i],
+                    batchScores[i] >= SecurityProtocol.BLOCK_SCORE ? " BLOCK" : "", why);
+        }
+
+        // ==========================================
+        // 3. Parallel rules, same scores
+        // ==========================================
+        System.out.println("\n--- 3. Parallel vs one rule after the other ---");
+        checkParallel(Math.min(payments, 1_000_000), accountCount, pool);
+        System.out.println(">> SUCCESS: identical scores for every payment.");
+
+        // ==========================================
+        // 4. Cost per payment
+        // ==========================================
+        System.out.println("\n--- 4. " + String.format("%,d", payments) + " payments over "
+                + String.format("%,d", accountCount) + " accounts, batches of " + BATCH + " ---");
+        PaymentBatch[] batches = new Generator(payments, accountCount).batches();
+        for (int round = 0; round < 2; round++) { // the first round is the warmup
+            boolean print = round == 1;
+            time("all rules, one after the other", batches, payments, print,
+                    () -> newScorer(accountCount, channels)::score);
+            time("all rules, parallel (" + pool.getParallelism() + " pool threads + caller)", batches, payments, print, () -> {
+                FraudScorer parallel = newScorer(accountCount, channels);
+                return (b, s) -> parallel.scoreParallel(b, s, pool);
+            });
+            for (int r = 0; r < scorer.ruleCount(); r++) {
+                int rule = r;
+                time("  " + scorer.ruleName(rule) + " only", batches, payments, print,
+                        () -> rules(accountCount, channels)[rule]::score);
+            }
+        }
+
+        // ==========================================
+        // 5. In front of Part 22's pipeline
+        // ==========================================
+        System.out.println("\n--- 5. Scoring + payment pipeline (" + workers + " workers) ---");
+        PaymentChannel[] accounts = openAccounts(accountCount);
+        FraudScorer gate = newScorer(accountCount, accounts);
+        LongAdder approved = new LongAdder(); // updated by all workers at once
+        LongAdder refused = new LongAdder();
+        LongAdder declined = new LongAdder();
+        PaymentPipeline pipeline = new PaymentPipeline(accounts, workers, 8192, 256, r -> {
+            if (r.status == PaymentRequest.DECLINED_FRAUD) {
+                declined.increment();
+            } else {
+                (r.isApproved() ? approved : refused).increment();
+            }
+        });
+        long start = System.nanoTime();
+        long id = 0;
+        for (PaymentBatch b : batches) {
+            gate.scoreParallel(b, batchScores, pool);
+            for (int i = 0; i < b.size(); i++, id++) {
+                PaymentRequest request = new PaymentRequest(id, b.accounts[i], b.amounts[i], System.nanoTime());
+                if (batchScores[i] >= SecurityProtocol.BLOCK_SCORE) {
+                    pipeline.reject(request, PaymentRequest.DECLINED_FRAUD); // never reaches a worker
+                } else {
+                    pipeline.submit(request);
+                }
+            }
+        }
+        pipeline.close();
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%,.0f payments/s end to end | approved %,d, insufficient funds %,d, declined as fraud %,d (%.3f%%)%n",
+                payments / (elapsed / 1e9), approved.sum(), refused.sum(), declined.sum(), 100.0 * declined.sum() / payments);
+        if (approved.sum() + refused.sum() + declined.sum() != payments) {
+            throw new IllegalStateException("Lost payments: " + (payments - approved.sum() - refused.sum() - declined.sum()));
+        }
+    }
+
+    // ==========================================
+    // SETUP AND HELPERS
+    // ==========================================
+    private interface BatchScorer {
+        void score(PaymentBatch batch, int[] scores);
+    }
+
+    // A one-minute window in 6 slices of 10 seconds for the counting rules
+    private static FraudRule[] rules(int accounts, PaymentChannel[] channels) {
+        return new FraudRule[] {
+                new VelocityRule(accounts, 6, 10_000, 5, 15),
+                new AmountOutlierRule(accounts, 15),
+                new SharedKeyRule(SharedKeyRule.DEVICE, 4 * accounts, 6, 10_000, 2, 25),
+                new SharedKeyRule(SharedKeyRule.IP, 4 * accounts, 6, 10_000, 20, 10),
+                new ChannelRule(channels)};
+    }
+
+    private static FraudScorer newScorer(int accounts, PaymentChannel[] channels) {
+        return new FraudScorer(BATCH, rules(accounts, channels));
+    }
+
+    // 'fresh' makes new rules for every run, so each run starts from empty windows
+    private static void time(String label, PaymentBatch[] batches, int payments, boolean print, Supplier<BatchScorer> fresh) {
+        BatchScorer scorer = fresh.get();
+        int[] scores = new int[BATCH];
+        long blocked = 0;
+        long start = System.nanoTime();
+        for (PaymentBatch b : batches) {
+            scorer.score(b, scores);
+            for (int i = 0; i < b.size(); i++) {
+                if (scores[i] >= SecurityProtocol.BLOCK_SCORE) {
+                    blocked++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (print) {
+            System.out.printf("  %-48s %7.1f ns/payment  (%,d blocked)%n", label, (double) elapsed / payments, blocked);
+        }
+    }
+
+    private static void checkParallel(int payments, int accountCount, ForkJoinPool pool) {
+        PaymentChannel[] channels = openAccounts(accountCount);
+        FraudScorer sequential = newScorer(accountCount, channels);
+        FraudScorer parallel = newScorer(accountCount, channels);
+        int[] expected = new int[BATCH];
+        int[] actual = new int[BATCH];
+        for (PaymentBatch b : new Generator(payments, accountCount).batches()) {
+            sequential.score(b, expected);
+            parallel.scoreParallel(b, actual, pool);
+            for (int i = 0; i < b.size(); i++) {
+                if (expected[i] != actual[i]) {
+                    throw new IllegalStateException("Payment scored " + actual[i] + " in parallel, " + expected[i] + " sequentially");
+                }
+            }
+        }
+    }
+
+    // Half credit cards, half wallets, like Part 22
+    private static PaymentChannel[] openAccounts(int count) {
+        Random random = new Random(count);
+        PaymentChannel[] accounts = new PaymentChannel[count];
+        for (int i = 0; i < count; i++) {
+            double balance = 100_000 + random.nextInt(900_000);
+            accounts[i] = (i % 2 == 0)
+                    ? new CreditCard("TXN_" + i, balance)
+                    : new DigitalWallet("TXN_" + i, balance, "Owner " + i);
+        }
+        return accounts;
+    }
+
+    // One hour of traffic: every account has its own device and usual amount, eight accounts share
+    // an office IP, and a little fraud mixed in (bursts, huge amounts, a few shared devices)
+    private static final class Generator {
+        private final int payments;
+        private final int accounts;
+
+        Generator(int payments, int accounts) {
+            this.payments = payments;
+            this.accounts = accounts;
+        }
+
+        PaymentBatch[] batches() {
+            Random random = new Random(23);
+            double[] usual = new double[accounts];
+            for (int a = 0; a < accounts; a++) {
+                usual[a] = Math.exp(4 + 1.5 * random.nextGaussian()); // most around 55, some in the thousands
+            }
+            PaymentBatch[] result = new PaymentBatch[(payments + BATCH - 1) / BATCH];
+            long step = 3_600_000L * 1000 / payments; // microseconds between payments
+            int burstAccount = -1;
+            int burstLeft = 0;
+            for (int i = 0; i < payments; i++) {
+                if (i % BATCH == 0) {
+                    result[i / BATCH] = new PaymentBatch(BATCH);
+                }
+                int account;
+                if (burstLeft > 0) {
+                    account = burstAccount;
+                    burstLeft--;
+                } else {
+                    account = random.nextInt(accounts);
+                    if (random.nextInt(5_000) == 0) {
+                        burstAccount = account;
+                        burstLeft = 10;
+                    }
+                }
+                double amount = Math.round(usual[account] * (0.5 + random.nextDouble()) * 100) / 100.0;
+                if (random.nextInt(2_000) == 0) {
+                    amount *= 20;
+                }
+                int device = account;
+                int ip = 0x0A000000 | (account / 8); // 10.x.x.x, eight accounts per office
+                if (random.nextInt(1_000) == 0) {
+                    device = -1 - random.nextInt(20); // a handful of devices used for many accounts
+                    ip = 0xC0A80000 | random.nextInt(20);
+                }
+                result[i / BATCH].add(account, Math.max(0.01, amount), START + i * step / 1000, device, ip);
+            }
+            return result;
+        }
+    }
+}
@@ -14,12 +14,19 @@ interface SecurityProtocol {
     // Variables in interfaces are 'public static final' by default.
     String ENCRYPTION_TYPE = "SHA-256";
 
-    void scanForFraud(); // Abstract method by default
+    // Risk scores run from 0 (nothing suspicious) to MAX_RISK; payments at BLOCK_SCORE or above are refused
+    int MAX_RISK = 100;
+    int BLOCK_SCORE = 70;
+
+    int scanForFraud(double amount); // Abstract method by default: returns the payment's risk score
 }
 
 // ABSTRACT CLASS (The Template)
 abstract class PaymentChannel implements SecurityProtocol {
 
+    // Shared by all payment channels (see Log.java)
+    static final Log LOG = Log.get(PaymentChannel.class);
+
     // ENCAPSULATION: Data is private. Direct access is blocked.
     private String transactionId;
     private double balance;
@@ -35,46 +42,74 @@ abstract class PaymentChannel implements SecurityProtocol {
     }
 
     // Encapsulation: Setter (Controlled Write Access with Validation)
-    public void deductBalance(double amount) {
+    // Check and update happen in one call, and the caller is told whether it worked.
+    // Not synchronized: a channel is used by one thread at a time (Part 22 gives each account to one worker thread).
+    public boolean deductBalance(double amount) {
         if (amount <= balance) {
             balance -= amount;
-        } else {
-            System.out.println(">> Transaction Failed: Insufficient Funds");
+            return true;
+        }
+        LOG.warn(">> Transaction Failed: Insufficient Funds");
+        return false;
+    }
+
+    // Batch version: same results as calling deductBalance for each amount in order,
+    // but the balance is read and written once. approved[i] tells which payments went through.
+    public int deductBatch(double[] amounts, boolean[] approved, int count) {
+        double remaining = balance;
+        int approvedCount = 0;
+        for (int i = 0; i < count; i++) {
+            approved[i] = amounts[i] <= remaining;
+            if (approved[i]) {
+                remaining -= amounts[i];
+                approvedCount++;
+            }
         }
+        balance = remaining;
+        return approvedCount;
     }
 
     // ABSTRACTION: This method MUST be implemented by child classes.
     // The "What" is defined here. The "How" depends on the child.
-    abstract void processPayment(double amount);
+    // Returns true if the payment went through.
+    abstract boolean processPayment(double amount);
 
     // Concrete method (Inherited by all children)
     public void printReceipt() {
-        System.out.println("Transaction ID: " + transactionId + " | Encrypted: " + ENCRYPTION_TYPE);
+        LOG.info("Transaction ID: {} | Encrypted: {}", transactionId, ENCRYPTION_TYPE);
     }
 }
 
 // CONCRETE CLASS 1 (Credit Card)
 class CreditCard extends PaymentChannel {
 
+    private final double creditLimit;
+
     public CreditCard(String id, double limit) {
         super(id, limit); // Calls parent constructor
+        this.creditLimit = limit;
     }
 
     // POLYMORPHISM (OVERRIDING): Changing parent behavior
     // This occurs at RUNTIME.
     @Override
-    void processPayment(double amount) {
-        System.out.println("Connecting to VISA Gateway...");
-        if (getBalance() >= amount) {
-            deductBalance(amount);
-            System.out.println("Success: Paid $" + amount + " via Credit Card.");
+    boolean processPayment(double amount) {
+        LOG.info("Connecting to VISA Gateway...");
+        if (!deductBalance(amount)) { // no separate getBalance() check: another caller could get in between
+            return false;
         }
+        LOG.info("Success: Paid ${} via Credit Card.", amount);
+        return true;
     }
 
     // Interface implementation
+    // Spending most of the credit limit in one payment is unusual. Only reads final fields,
+    // so any thread may call it (Part 23 runs it as one of several fraud rules, millions of times:
+    // hence DEBUG, which costs one level check when it's off).
     @Override
-    public void scanForFraud() {
-        System.out.println("Security: Scanning Location and IP address...");
+    public int scanForFraud(double amount) {
+        LOG.debug("Security: Scanning Location and IP address...");
+        return (int) Math.min(MAX_RISK, 60 * amount / creditLimit);
     }
 }
 
@@ -82,6 +117,8 @@ class CreditCard extends PaymentChannel {
 // CONCRETE CLASS 2 (Digital Wallet)
 class DigitalWallet extends PaymentChannel {
 
+    static final double TRANSFER_LIMIT = 10_000;
+
     String walletOwner;
 
     public DigitalWallet(String id, double balance, String owner) {
@@ -91,24 +128,29 @@ class DigitalWallet extends PaymentChannel {
 
     // POLYMORPHISM (OVERRIDING)
     @Override
-    void processPayment(double amount) {
-        System.out.println("Verifying Biometrics for " + walletOwner + "...");
-        deductBalance(amount);
-        System.out.println("Success: Wallet transfer of $" + amount + " complete.");
+    boolean processPayment(double amount) {
+        LOG.info("Verifying Biometrics for {}...", walletOwner);
+        if (!deductBalance(amount)) {
+            return false;
+        }
+        LOG.info("Success: Wallet transfer of ${} complete.", amount);
+        return true;
     }
 
     // POLYMORPHISM (OVERLOADING): Same method name, different parameters.
     // This occurs at COMPILE TIME.
     // Scenario: User applies a promo code.
-    void processPayment(double amount, String promoCode) {
-        System.out.println("Applying Promo Code: " + promoCode);
+    boolean processPayment(double amount, String promoCode) {
+        LOG.info("Applying Promo Code: {}", promoCode);
         double discountedAmount = amount * 0.90; // 10% discount
-        processPayment(discountedAmount); // Reuse the logic above
+        return processPayment(discountedAmount); // Reuse the logic above
     }
 
+    // Wallets are for small transfers: anything above the limit is blocked on its own
     @Override
-    public void scanForFraud() {
-        System.out.println("Security: Verifying Device Fingerprint...");
+    public int scanForFraud(double amount) {
+        LOG.debug("Security: Verifying Device Fingerprint...");
+        return (amount > TRANSFER_LIMIT) ? BLOCK_SCORE + 10 : (int) (40 * amount / TRANSFER_LIMIT);
     }
 }
 
@@ -121,16 +163,23 @@ public class Part5 {
         // This is crucial. The variable is 'PaymentChannel', but it behaves like 'CreditCard'.
         PaymentChannel myCard = new CreditCard("TXN_101", 500.00);
 
-        myCard.scanForFraud();      // Calls CreditCard's implementation
-        myCard.processPayment(100); // Calls CreditCard's implementation
+        int risk = myCard.scanForFraud(100); // Calls CreditCard's implementation
+        if (risk < SecurityProtocol.BLOCK_SCORE) {
+            myCard.processPayment(100); // Calls CreditCard's implementation
+        }
         myCard.printReceipt();      // Calls Parent's implementation
+        boolean paid = myCard.processPayment(1000); // More than the remaining 400: refused, and the caller knows
+        Log.flush();
+        System.out.println("Risk score of the 100 payment: " + risk + " | payment of 1000 went through: " + paid);
 
+        Log.flush(); // payment logs are asynchronous: print them before the next heading
         System.out.println("\n--- Scenario 2: Polymorphism (Overloading) ---");
         DigitalWallet myWallet = new DigitalWallet("TXN_102", 200.00, "Alice");
 
         // Calling the overloaded method (with 2 arguments)
         myWallet.processPayment(50, "CASHBACK10");
 
+        Log.flush();
         System.out.println("\n--- Scenario 3: Encapsulation Protection ---");
         // myCard.balance = 0; // ERROR: 'balance' has private access. Cannot be accessed outside the class.
         System.out.println("Remaining Balance (Accessed via Getter): " + myCard.getBalance());
@@ -17,6 +17,8 @@ class InvalidAgeException extends Exception {
 
 class UserRegistration {
 
+    private static final Log LOG = Log.get(UserRegistration.class);
+
     // 2. THROWS (The Warning Sign)
     // Declares that this method *might* explode.
     // It passes the responsibility to the caller.
@@ -28,7 +30,7 @@ class UserRegistration {
             throw new InvalidAgeException("User " + name + " is underage (" + age + "). Registration Denied.");
         }
 
-        System.out.println(">> Success: User " + name + " registered.");
+        LOG.info(">> Success: User {} registered.", name);
     }
 
     // Unchecked Exception Demo
@@ -37,7 +39,7 @@ class UserRegistration {
     public void calculateRiskScore(int dataPoints) {
         // If dataPoints is 0, Java automatically throws ArithmeticException
         int score = 100 / dataPoints;
-        System.out.println("Risk Score: " + score);
+        LOG.info("Risk Score: {}", score);
     }
 }
 
@@ -55,11 +57,13 @@ public class Part6 {
 
             // CATCH: What to do if it fails
         } catch (InvalidAgeException e) {
+            Log.flush(); // registration logs are asynchronous: print them before our own lines
             System.out.println("CAUGHT EXCEPTION: " + e.getMessage());
             // Real world usage: Log this error to a file
 
             // FINALLY: Always executes, success or failure
         } finally {
+            Log.flush();
             System.out.println("FINALLY BLOCK: Closing database connections... (Always runs)");
         }
 
@@ -69,10 +73,12 @@ public class Part6 {
         try {
             reg.calculateRiskScore(0); // Division by zero
         } catch (ArithmeticException e) {
+            Log.flush();
             System.out.println("CAUGHT RUNTIME ERROR: Cannot divide by zero.");
             e.printStackTrace(); // Prints the red error text (useful for debugging)
         }
 
+        Log.flush();
         System.out.println("\n--- Summary of 'throw' vs 'throws' ---");
         System.out.println("1. 'throws': Used in method signature. Tells compiler 'This method is dangerous'.");
         System.out.println("2. 'throw': Used inside method. Actually creates the error.");
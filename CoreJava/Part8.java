@@ -13,6 +13,8 @@ import java.util.concurrent.TimeUnit;
 
 class SharedInventory {
 
+    private static final Log LOG = Log.get(SharedInventory.class);
+
     // INSTANCE VARIABLE (Shared State)
     // This lives in the Heap. Multiple threads access the SAME memory.
     // WITHOUT synchronization, this is NOT thread-safe.
@@ -54,7 +56,7 @@ class SharedInventory {
     public void demonstrateLocalSafety(String threadName) {
         int tempCount = 0; // Local variable
         tempCount++;
-        System.out.println(threadName + " local count: " + tempCount + " (Safe)");
+        LOG.info("{} local count: {} (Safe)", threadName, tempCount);
     }
 
     public int getStock() {
@@ -115,6 +117,7 @@ public class Part8 {
 
         inventory.stopSystem(); // This flips the volatile flag, stopping Thread 3
 
+        Log.flush(); // worker threads logged through the async Log facade
         System.out.println("\n--- Final Results ---");
         System.out.println("Expected Stock: 2000");
         System.out.println("Actual Stock:   " + inventory.getStock());